@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import java.util.ArrayDeque;
+
+/**
+ * Work of the lowest priority on the encode thread, such as encoding, caching and sending start and preview images.<br>
+ * Messages to the host application leave the extension in three priorities. Commands such as vibrations are sent right away by the control thread,
+ * display updates are encoded and sent by the encode thread, see {@link FrameSender}, and background work runs on the encode thread only when it
+ * has no display update or animation frame due. A start image requested while the control is updating the display therefore neither delays
+ * taps on the control thread nor the display updates. Background work runs in the order it is posted.
+ */
+final class BackgroundQueue {
+
+    private final Handler mHandler;
+
+    // Guarded by mTasks
+    private final ArrayDeque<Runnable> mTasks = new ArrayDeque<Runnable>();
+    private boolean mIdleHandlerAdded;
+
+    private final MessageQueue.IdleHandler mIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            final Runnable task;
+            synchronized (mTasks) {
+                task = mTasks.pollFirst();
+            }
+            if (task != null) {
+                task.run();
+            }
+            synchronized (mTasks) {
+                if (mTasks.isEmpty()) {
+                    mIdleHandlerAdded = false;
+                    return false;
+                }
+            }
+            // An idle handler is called once each time the thread becomes idle, so wake the thread to run the next task
+            // after the display updates posted meanwhile
+            mHandler.post(mWake);
+            return true;
+        }
+    };
+
+    private final Runnable mWake = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final Runnable mAddIdleHandler = new Runnable() {
+        @Override
+        public void run() {
+            Looper.myQueue().addIdleHandler(mIdleHandler);
+        }
+    };
+
+    /**
+     * Create a queue of background work.
+     *
+     * @param handler handler of the encode thread.
+     */
+    BackgroundQueue(final Handler handler) {
+        mHandler = handler;
+    }
+
+    /**
+     * Queue work to run when the encode thread is idle. Called on any thread.
+     *
+     * @param task the work.
+     */
+    void post(final Runnable task) {
+        synchronized (mTasks) {
+            mTasks.addLast(task);
+            if (mIdleHandlerAdded) {
+                return;
+            }
+            mIdleHandlerAdded = true;
+        }
+        // The idle handler must be added on the encode thread
+        mHandler.post(mAddIdleHandler);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+/**
+ * The battery status of the accessory, the result of {@link Control#requestBatteryStatus(PendingResult.Callback)}.
+ *
+ * @since 2
+ */
+public final class BatteryStatus {
+
+    private final boolean mIsCharging;
+    private final int mLevel;
+    private final long mElapsedRealtime;
+
+    BatteryStatus(final boolean isCharging, final int level, final long elapsedRealtime) {
+        mIsCharging = isCharging;
+        mLevel = level;
+        mElapsedRealtime = elapsedRealtime;
+    }
+
+    /**
+     * @return true if the accessory battery is being charged.
+     */
+    public boolean isCharging() {
+        return mIsCharging;
+    }
+
+    /**
+     * @return Current battery level as a percentage.
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * @return The time the status was received, in {@link android.os.SystemClock#elapsedRealtime()}.
+     */
+    public long getElapsedRealtime() {
+        return mElapsedRealtime;
+    }
+
+    @Override
+    public String toString() {
+        return "BatteryStatus{level=" + mLevel + ", charging=" + mIsCharging + "}";
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.WeakHashMap;
+
+/**
+ * A small pool of full screen bitmaps, used by {@link Control#createBitmap(boolean)} and {@link Control#recycleBitmap(android.graphics.Bitmap)}.<br>
+ * Only bitmaps created for the pool are pooled, so that a bitmap still used by its owner is never handed out again.
+ * Portrait and landscape bitmaps are kept apart.
+ */
+final class BitmapPool {
+
+    /**
+     * Maximum number of pooled bitmaps for each orientation.
+     */
+    static final int MAX_POOLED_BITMAPS = 3;
+
+    private final ArrayDeque<Bitmap> mPortrait = new ArrayDeque<Bitmap>(MAX_POOLED_BITMAPS);
+    private final ArrayDeque<Bitmap> mLandscape = new ArrayDeque<Bitmap>(MAX_POOLED_BITMAPS);
+
+    // Bitmaps created for the pool, weakly referenced so that bitmaps that are never returned can be collected
+    private final WeakHashMap<Bitmap, Boolean> mCreated = new WeakHashMap<Bitmap, Boolean>();
+
+    /**
+     * Take a bitmap from the pool. The content of the bitmap is undefined.
+     *
+     * @param isPortrait True for portrait bitmap, false for landscape.
+     * @return a pooled bitmap, or null if the pool is empty.
+     */
+    synchronized Bitmap obtain(final boolean isPortrait) {
+        return (isPortrait ? mPortrait : mLandscape).pollLast();
+    }
+
+    /**
+     * Register a bitmap created for the pool, see {@link #release(android.graphics.Bitmap)}.
+     *
+     * @param bitmap the bitmap, mutable, {@link android.graphics.Bitmap.Config#RGB_565} and with the size of the accessory display.
+     */
+    synchronized void track(final Bitmap bitmap) {
+        mCreated.put(bitmap, Boolean.TRUE);
+    }
+
+    /**
+     * Return a bitmap to the pool. The bitmap must not be used by the caller afterwards.
+     *
+     * @param bitmap the bitmap.
+     * @return true if the bitmap was pooled, false if it was not created for the pool, can not be pooled or the pool is full.
+     */
+    synchronized boolean release(final Bitmap bitmap) {
+        if (bitmap == null || !mCreated.containsKey(bitmap) || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return false;
+        }
+        ArrayDeque<Bitmap> pool;
+        if (bitmap.getWidth() == SWR30.DisplaySize.DISPLAY_SIZE_SHORTEST && bitmap.getHeight() == SWR30.DisplaySize.DISPLAY_SIZE_LONGEST) {
+            pool = mPortrait;
+        } else if (bitmap.getWidth() == SWR30.DisplaySize.DISPLAY_SIZE_LONGEST && bitmap.getHeight() == SWR30.DisplaySize.DISPLAY_SIZE_SHORTEST) {
+            pool = mLandscape;
+        } else {
+            return false;
+        }
+        if (pool.size() >= MAX_POOLED_BITMAPS) {
+            return false;
+        }
+        for (Bitmap pooled : pool) {
+            if (pooled == bitmap) {
+                // Already released
+                return false;
+            }
+        }
+        pool.addLast(bitmap);
+        return true;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.os.Bundle;
+
+import java.util.ArrayList;
+
+/**
+ * Commands collected between {@link Control#beginBatch()} and {@link Control#commitBatch()}, sent to the host application as one {@link SWR30#MSG_BATCH}.<br>
+ * Display updates are encoded on the encode thread, so they may be added to the batch later than the other commands. Each display update shown
+ * during the batch is counted as pending, and the batch is sent once it has been committed and the last pending display update has been added.
+ * The commands keep the order in which they are added.<br>
+ * Until the batch is sent, commands of the control sent after the commit are held, and sent right after the batch, so that they can not overtake it.
+ * A batch begun meanwhile waits for this batch in the same way.
+ */
+final class CommandBatch {
+
+    private final Control mControl;
+    private final ArrayList<Bundle> mCommands = new ArrayList<Bundle>();
+    private ArrayList<Bundle> mHeld;
+    private CommandBatch mNext;
+    private int mPending;
+    private boolean mCommitted;
+    private boolean mWaiting;
+    private boolean mSent;
+
+    CommandBatch(final Control control) {
+        mControl = control;
+    }
+
+    /**
+     * Add a command.
+     *
+     * @param what the message type.
+     * @param extras the message extras.
+     */
+    synchronized void add(final int what, final Bundle extras) {
+        if (mSent) {
+            // Too late, a display update is never expected after the batch has been sent
+            mControl.deliverMessageToHostapp(what, extras);
+            return;
+        }
+        mCommands.add(toCommand(what, extras));
+    }
+
+    /**
+     * Hold a command sent after the commit until the batch has been sent.
+     *
+     * @param what the message type.
+     * @param extras the message extras.
+     * @return false if the batch has already been sent, and the command should be sent right away.
+     */
+    synchronized boolean hold(final int what, final Bundle extras) {
+        if (mSent) {
+            return false;
+        }
+        if (mHeld == null) {
+            mHeld = new ArrayList<Bundle>();
+        }
+        mHeld.add(toCommand(what, extras));
+        return true;
+    }
+
+    /**
+     * Let a batch committed after this one wait until this batch, and the commands held by it, have been sent.
+     *
+     * @param next the batch committed after this one, not committed yet.
+     */
+    synchronized void holdBatch(final CommandBatch next) {
+        if (!mSent) {
+            next.setWaiting(true);
+            mNext = next;
+        }
+    }
+
+    /**
+     * Count a display update that will be added later, see {@link #finishPending()}.
+     */
+    synchronized void addPending() {
+        mPending++;
+    }
+
+    /**
+     * A pending display update has been added, or will not be sent.
+     */
+    synchronized void finishPending() {
+        mPending--;
+        sendIfReady();
+    }
+
+    /**
+     * No more commands will be added, except pending display updates. The batch is sent when the pending display updates have been added.
+     *
+     * @return true if the batch has been sent.
+     */
+    synchronized boolean commit() {
+        mCommitted = true;
+        sendIfReady();
+        return mSent;
+    }
+
+    private synchronized void setWaiting(final boolean waiting) {
+        mWaiting = waiting;
+        sendIfReady();
+    }
+
+    private void sendIfReady() {
+        if (!mCommitted || mPending > 0 || mWaiting || mSent) {
+            return;
+        }
+        mSent = true;
+        if (mCommands.size() == 1) {
+            // Not worth a batch
+            send(mCommands.get(0));
+        } else if (!mCommands.isEmpty()) {
+            final Bundle extras = mControl.createExtrasWithInstanceId();
+            extras.putParcelableArrayList(SWR30.EXTRA_BATCH_COMMANDS, mCommands);
+            mControl.deliverMessageToHostapp(SWR30.MSG_BATCH, extras);
+        }
+        if (mHeld != null) {
+            for (int i = 0; i < mHeld.size(); i++) {
+                send(mHeld.get(i));
+            }
+            mHeld = null;
+        }
+        if (mNext != null) {
+            mNext.setWaiting(false);
+            mNext = null;
+        }
+    }
+
+    private Bundle toCommand(final int what, final Bundle extras) {
+        // The shared extras of commands without payload must not be modified
+        final Bundle command = extras == mControl.mInstanceIdExtras ? new Bundle(extras) : extras;
+        command.putInt(SWR30.EXTRA_BATCH_COMMAND_TYPE, what);
+        return command;
+    }
+
+    private void send(final Bundle command) {
+        final int what = command.getInt(SWR30.EXTRA_BATCH_COMMAND_TYPE);
+        command.remove(SWR30.EXTRA_BATCH_COMMAND_TYPE);
+        mControl.deliverMessageToHostapp(what, command);
+    }
+}
@@ -36,19 +36,23 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Rect;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Message;
 import android.os.Messenger;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.text.format.DateUtils;
 import android.util.DisplayMetrics;
 import android.view.View;
 import android.view.ViewGroup;
 
-import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
 
 /**
  * Controls are used to take control over the accessory, for example the display, vibrator, listen to tap and key events, setting smart wake up alarms, and checking battery status.<br>
@@ -81,6 +85,23 @@ import java.lang.reflect.InvocationTargetException;
  */
 public class Control {
 
+    /**
+     * Time in milliseconds that a request waits for its reply before it fails, see {@link PendingResult}.
+     *
+     * @since 2
+     */
+    public static final long REQUEST_TIMEOUT_MILLIS = 10 * DateUtils.SECOND_IN_MILLIS;
+
+    static final BitmapPool sBitmapPool = new BitmapPool();
+
+    static final ResourceFrameCache sResourceFrameCache = new ResourceFrameCache();
+
+    // Takes the place of an alarm request without a result in the queue of alarm requests
+    private static final PendingResult<Integer> UNTRACKED_ALARM_REQUEST = new PendingResult<Integer>((Integer) null);
+
+    // Last battery status of the accessory, shared by all controls on the control thread
+    static BatteryStatus sBatteryStatus;
+
     final Context mContext;
     final String mControlInstanceId;
     final Messenger mMessengerToHostApp;
@@ -91,6 +112,59 @@ public class Control {
 
     int mState;
 
+    // Display settings, also read on the encode thread
+    volatile int mFrameFormat = FrameFormat.FRAME_FORMAT_PNG;
+    volatile int mDitherMode = DitherMode.DITHER_THRESHOLD;
+    volatile boolean mDeltaUpdatesEnabled;
+    volatile int mFrameCodec = FrameCodec.FRAME_CODEC_NONE;
+    volatile boolean mSharedMemoryEnabled;
+    volatile int mChunkSize;
+    volatile boolean mResourceCacheEnabled;
+    volatile boolean mFrameConflationEnabled;
+    volatile long mMinFrameIntervalMillis;
+
+    // Start and preview images, encode thread
+    final MonochromeEncoder mMonochromeEncoder = new MonochromeEncoder();
+    byte[] mImageBuffer;
+
+    Handler mHandler;
+    Handler mEncodeHandler;
+    BackgroundQueue mBackgroundQueue;
+    FrameSender mFrameSender;
+
+    // Control thread
+    CommandBatch mBatch;
+    CommandBatch mCommittedBatch;
+    Bundle mInstanceIdExtras;
+    PendingResult<BatteryStatus> mBatteryRequest;
+    boolean mBatteryRequestInFlight;
+    long mBatteryRequestTime;
+    final ArrayDeque<PendingResult<Integer>> mAlarmRequests = new ArrayDeque<PendingResult<Integer>>();
+    long mLastAlarmTime;
+    long mBatteryStatusMaxAgeMillis;
+    boolean mInputBatchingEnabled;
+    InputBatch mInputBatch;
+    boolean mInputBatchScheduled;
+
+    private final Runnable mDeliverCachedBatteryStatus = new Runnable() {
+        @Override
+        public void run() {
+            final BatteryStatus status = sBatteryStatus;
+            onBatteryStatus(status.isCharging(), status.getLevel());
+        }
+    };
+
+    private final Runnable mDeliverInputBatch = new Runnable() {
+        @Override
+        public void run() {
+            mInputBatchScheduled = false;
+            if (mInputBatch.size() > 0) {
+                onInputBatch(mInputBatch);
+                mInputBatch.clear();
+            }
+        }
+    };
+
     /**
      * Create a control. Note that no initialisation of variables nor listeners such as content observers or broadcast receivers should be done here, but in {@link #onStart()} instead.
      * The reason for this is that this constructor is called one time in {@link #onAdded()} and again in {@link #onStart()} however with the same controlInstanceId.
@@ -115,6 +189,8 @@ public class Control {
 
     /**
      * Creates a full screen bitmap with optimal configuration to be displayed on the accessory.<br>
+     * The bitmap is taken from a pool of bitmaps returned by {@link #recycleBitmap(android.graphics.Bitmap)} if possible, so that controls
+     * updating the display often do not allocate a new bitmap for every frame. The caller owns the returned bitmap.<br>
      *
      * @param isPortrait True for portrait bitmap, false for landscape.<br>
      * A portrait image will have width {@value com.sonymobile.smartwear.swr30.Control.DisplaySize#DISPLAY_SIZE_SHORTEST} and height {@value com.sonymobile.smartwear.swr30.Control.DisplaySize#DISPLAY_SIZE_LONGEST}.<br>
@@ -126,6 +202,12 @@ public class Control {
      * @since 1
      */
     public static Bitmap createBitmap(final boolean isPortrait) {
+        Bitmap bitmap = sBitmapPool.obtain(isPortrait);
+        if (bitmap != null) {
+            bitmap.eraseColor(Color.WHITE);
+            return bitmap;
+        }
+
         int width;
         int height;
 
@@ -138,13 +220,14 @@ public class Control {
         }
 
         // RGB_565 is most suitable for monochrome display
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
 
         // Set the density to default to avoid scaling.
         bitmap.setDensity(DisplayMetrics.DENSITY_DEFAULT);
 
         // Set white background
         bitmap.eraseColor(Color.WHITE);
+        sBitmapPool.track(bitmap);
         return bitmap;
     }
 
@@ -154,14 +237,15 @@ public class Control {
      * @param view An inflated or dynamic instance of a {@link android.view.View} or {@link android.view.ViewGroup}, to be rendered to fit within the bounds of the accessory screen.
      * Please note that any declared width or height of your outer layout element will have no function when rendering the layout to a bitmap. The layout will be sized according to the isPortrait parameter.
      * Still, declaring width/height to {@link com.sonymobile.smartwear.swr30.R.dimen#swr30_display_size_shortest} and {@link com.sonymobile.smartwear.swr30.R.dimen#swr30_display_size_longest} is recommended so the preview in the IDE is showing proper proportions for your layout.<br>
-     * We strongly encourage use of only pixel dimensions when specifying sizes in layouts, in order to prevent unwanted scaling.
+     * We strongly encourage use of only pixel dimensions when specifying sizes in layouts, in order to prevent unwanted scaling.<br>
+     * To render the same view repeatedly, use a {@link ViewRenderer} instead, which only measures and lays out the view when needed.
      *
      * @param isPortrait True for portrait bitmap, false for landscape.<br>
      * A portrait image will have width {@value com.sonymobile.smartwear.swr30.Control.DisplaySize#DISPLAY_SIZE_SHORTEST} and height {@value com.sonymobile.smartwear.swr30.Control.DisplaySize#DISPLAY_SIZE_LONGEST}.<br>
      * A landscape image will have width {@value com.sonymobile.smartwear.swr30.Control.DisplaySize#DISPLAY_SIZE_LONGEST} and height {@value com.sonymobile.smartwear.swr30.Control.DisplaySize#DISPLAY_SIZE_SHORTEST}.<br>
      * Landscape images are rotated on the accessory automatically depending on the left/right hand setting in the host application.
      *
-     * @return A {@link android.graphics.Bitmap} displaying the rendered view.
+     * @return A {@link android.graphics.Bitmap} displaying the rendered view. The bitmap is created by {@link #createBitmap(boolean)}, and can be returned with {@link #recycleBitmap(android.graphics.Bitmap)}.
      *
      * @since 1
      * */
@@ -170,13 +254,26 @@ public class Control {
         Canvas canvas = new Canvas(screenBitmap);
 
         view.setLayoutParams(new ViewGroup.LayoutParams(screenBitmap.getWidth(), screenBitmap.getHeight()));
-        view.measure(screenBitmap.getWidth(), screenBitmap.getHeight());
-        view.layout(0, 0, screenBitmap.getWidth(), screenBitmap.getHeight());
+        ViewRenderer.layout(view, screenBitmap.getWidth(), screenBitmap.getHeight());
         view.draw(canvas);
 
         return screenBitmap;
     }
 
+    /**
+     * Return a bitmap that is no longer used, to be reused by {@link #createBitmap(boolean)} and {@link #renderView(android.view.View, boolean)}.<br>
+     * The caller gives up ownership of the bitmap and must not use it afterwards. It is safe to recycle a bitmap directly after it has been passed to
+     * {@link #showImage(android.graphics.Bitmap)}, since that method never keeps a reference to the bitmap.<br>
+     * Bitmaps that were not created by {@link #createBitmap(boolean)} are ignored.
+     *
+     * @param bitmap the bitmap.
+     *
+     * @since 2
+     */
+    public static void recycleBitmap(final Bitmap bitmap) {
+        sBitmapPool.release(bitmap);
+    }
+
 
     /**
      * Unique instance ID, assigned by the host application when an instance is added, see {@link Control#onAdded()}.
@@ -244,6 +341,7 @@ public class Control {
 
     final void start() {
         mState = STATE_STARTED;
+        getFrameSender().reset();
         Dbg.d("Control onStart");
         onStart();
     }
@@ -254,6 +352,21 @@ public class Control {
             onStop();
         }
         mState = STATE_ADDED;
+        // Commands of an open batch are not sent to a stopped control
+        mBatch = null;
+        cancelRequests();
+        // Input is not delivered to a stopped control
+        if (mInputBatchScheduled) {
+            getHandler().removeCallbacks(mDeliverInputBatch);
+            mInputBatchScheduled = false;
+        }
+        if (mInputBatch != null) {
+            mInputBatch.clear();
+        }
+        // A control that never showed anything has no display path to release
+        if (mFrameSender != null) {
+            mFrameSender.release();
+        }
     }
 
     final void add() {
@@ -264,6 +377,7 @@ public class Control {
 
     final void remove() {
         stop();
+        ImageCache.invalidate(mContext, mControlInstanceId);
 
         // no state for removed
         Dbg.d("Control onRemoved");
@@ -334,6 +448,61 @@ public class Control {
         return null;
     }
 
+    /**
+     * Override this method to select the format used to send the images returned by {@link #getStartImage()} and {@link #getPreviewImage()}.<br>
+     * The images are usually requested from an instance that has only been constructed, so {@link #onStart()} has not been called, and the format set
+     * there by {@link #setFrameFormat(int)} does not apply. {@link Control.FrameFormat#FRAME_FORMAT_MONOCHROME} requires a host application implementing
+     * API version 2, see <a href="R.attr.html#swr30ExtensionMinApiVersion">swr30ExtensionMinApiVersion</a>.
+     * There is no need to call the super class version of the method.
+     *
+     * @return Any value defined in {@link Control.FrameFormat}. Default is {@link Control.FrameFormat#FRAME_FORMAT_PNG}.
+     *
+     * @since 2
+     */
+    public int getImageFormat() {
+        return FrameFormat.FRAME_FORMAT_PNG;
+    }
+
+    /**
+     * Override this method to let the library cache the images returned by {@link #getStartImage()} and {@link #getPreviewImage()} on disk.<br>
+     * When the host application asks for the images, for example on every connection with the accessory, a cached image is sent directly,
+     * without instantiating the control or rendering the image. The cache is kept per control instance, and is cleared when the application is updated
+     * and when the instance is removed.<br>
+     * Return a key that changes whenever the images change, such as a hash of the instance settings. A cached image is not used if it was written with another key,
+     * when this is detected. Since the control is not instantiated when a cached image is used, the cache must also be cleared explicitly
+     * when the images change, for example by the control activity when the user has edited the settings, see {@link #invalidateImageCache(android.content.Context, String)}.
+     * There is no need to call the super class version of the method.
+     *
+     * @return A version key, or null to disable caching. Default is null.
+     *
+     * @since 2
+     */
+    public String getImageVersionKey() {
+        return null;
+    }
+
+    /**
+     * Clear the cached start and preview images of this instance, see {@link #getImageVersionKey()}.
+     *
+     * @since 2
+     */
+    protected void invalidateImageCache() {
+        ImageCache.invalidate(mContext, mControlInstanceId);
+    }
+
+    /**
+     * Clear the cached start and preview images of a control instance, see {@link #getImageVersionKey()}.
+     * This can be called by the control activity, see <a href="package-summary.html#ActivityRegistration">Control activity registration</a>, after the user has edited the settings of an instance.
+     *
+     * @param context The context.
+     * @param controlInstanceId The control instance ID, see {@link SWR30#EXTRA_CONTROL_INSTANCE_ID}.
+     *
+     * @since 2
+     */
+    public static void invalidateImageCache(final Context context, final String controlInstanceId) {
+        ImageCache.invalidate(context, controlInstanceId);
+    }
+
     /**
      * Called when tap is detected. There is no need to call the super class version of the method.
      *
@@ -357,6 +526,25 @@ public class Control {
         Dbg.d("onKey not implemented");
     }
 
+    /**
+     * Called with the taps and key events received since the last call, when enabled by {@link #setInputBatchingEnabled(boolean)}.
+     * A burst of taps or key repeats that arrives together is delivered in one call, so the control can react, and redraw, once per burst.<br>
+     * The default implementation calls {@link #onTap(long)} and {@link #onKey(int, long)} for each event.
+     *
+     * @param batch The events, oldest first. Only valid during the call.
+     *
+     * @since 2
+     */
+    public void onInputBatch(final InputBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.getType(i) == InputBatch.EventType.EVENT_TAP) {
+                onTap(batch.getTimestamp(i));
+            } else {
+                onKey(batch.getKeyEvent(i), batch.getTimestamp(i));
+            }
+        }
+    }
+
     /**
      * Called when an error occurs. There is no need to call the super class version of the method.
      *
@@ -379,8 +567,7 @@ public class Control {
      * @param extras message extras.
      */
     void onMessage(final int what, final Bundle extras) {
-        Dbg.d("onMessage: " + what);
-        Bundle responseExtras = createExtrasWithInstanceId();
+        Dbg.d("onMessage: ", what);
 
         switch (what) {
             case SWR30.MSG_ADDED:
@@ -399,24 +586,48 @@ public class Control {
                 onError(extras.getInt(SWR30.EXTRA_ERROR_CODE), extras.getString(SWR30.EXTRA_ERROR_DEBUG_MESSAGE));
                 break;
             case SWR30.MSG_TAP_EVENT:
-                onTap(extras.getLong(SWR30.EXTRA_TIMESTAMP));
+                if (mInputBatchingEnabled) {
+                    addInputEvent(InputBatch.EventType.EVENT_TAP, 0, extras.getLong(SWR30.EXTRA_TIMESTAMP));
+                } else {
+                    onTap(extras.getLong(SWR30.EXTRA_TIMESTAMP));
+                }
                 break;
             case SWR30.MSG_KEY_EVENT:
-                onKey(extras.getInt(SWR30.EXTRA_KEY_EVENT), extras.getLong(SWR30.EXTRA_TIMESTAMP));
+                if (mInputBatchingEnabled) {
+                    addInputEvent(InputBatch.EventType.EVENT_KEY, extras.getInt(SWR30.EXTRA_KEY_EVENT), extras.getLong(SWR30.EXTRA_TIMESTAMP));
+                } else {
+                    onKey(extras.getInt(SWR30.EXTRA_KEY_EVENT), extras.getLong(SWR30.EXTRA_TIMESTAMP));
+                }
                 break;
             case SWR30.MSG_SET_SMART_ALARM_RESULT:
-                onSetAlarmResult(extras.getInt(SWR30.EXTRA_SET_ALARM_RESULT));
+                final int alarmResult = extras.getInt(SWR30.EXTRA_SET_ALARM_RESULT);
+                // The host application replies in order, so the reply belongs to the oldest request. A request that has timed out
+                // stays in the queue until its reply has arrived, and the reply is dropped
+                final PendingResult<Integer> alarmRequest = mAlarmRequests.pollFirst();
+                if (alarmRequest != null) {
+                    alarmRequest.complete(alarmResult);
+                }
+                onSetAlarmResult(alarmResult);
                 break;
             case SWR30.MSG_BATTERY_STATUS:
-                onBatteryStatus(extras.getBoolean(SWR30.EXTRA_BATTERY_IS_CHARGING), extras.getInt(SWR30.EXTRA_BATTERY_LEVEL));
+                final boolean isCharging = extras.getBoolean(SWR30.EXTRA_BATTERY_IS_CHARGING);
+                final int level = extras.getInt(SWR30.EXTRA_BATTERY_LEVEL);
+                final PendingResult<BatteryStatus> batteryRequest = mBatteryRequest;
+                mBatteryRequest = null;
+                mBatteryRequestInFlight = false;
+                sBatteryStatus = new BatteryStatus(isCharging, level, SystemClock.elapsedRealtime());
+                if (batteryRequest != null) {
+                    batteryRequest.complete(sBatteryStatus);
+                }
+                onBatteryStatus(isCharging, level);
                 break;
             case SWR30.MSG_GET_PREVIEW_IMAGE:
-                responseExtras.putByteArray(SWR30.EXTRA_PREVIEW_IMAGE_DATA_RAW, bitmapToByteArray(getPreviewImage()));
-                sendMessageToHostapp(SWR30.MSG_UPDATE_PREVIEW_IMAGE, responseExtras);
+                sendImage(SWR30.MSG_UPDATE_PREVIEW_IMAGE, ImageCache.TYPE_PREVIEW_IMAGE, SWR30.EXTRA_PREVIEW_IMAGE_DATA_RAW,
+                        SWR30.EXTRA_PREVIEW_IMAGE_DATA_MONOCHROME, getPreviewImage());
                 break;
             case SWR30.MSG_GET_START_IMAGE:
-                responseExtras.putByteArray(SWR30.EXTRA_START_IMAGE_DATA_RAW, bitmapToByteArray(getStartImage()));
-                sendMessageToHostapp(SWR30.MSG_UPDATE_START_IMAGE, responseExtras);
+                sendImage(SWR30.MSG_UPDATE_START_IMAGE, ImageCache.TYPE_START_IMAGE, SWR30.EXTRA_START_IMAGE_DATA_RAW,
+                        SWR30.EXTRA_START_IMAGE_DATA_MONOCHROME, getStartImage());
                 break;
             default:
                 Dbg.e("Unhandled message type: " + what);
@@ -436,10 +647,23 @@ public class Control {
      * @since 1
      */
     protected void showImage(final int resourceId) {
-        Uri resourceUri = new Uri.Builder().scheme(ContentResolver.SCHEME_ANDROID_RESOURCE)
+        if (mResourceCacheEnabled && mFrameFormat == FrameFormat.FRAME_FORMAT_MONOCHROME) {
+            getFrameSender().showResource(resourceId);
+            return;
+        }
+        showImage(getResourceUri(resourceId));
+    }
+
+    /**
+     * Returns the URI of a resource of this extension, for the host application to load.
+     *
+     * @param resourceId The resource ID.
+     * @return the URI.
+     */
+    Uri getResourceUri(final int resourceId) {
+        return new Uri.Builder().scheme(ContentResolver.SCHEME_ANDROID_RESOURCE)
                 .authority(mContext.getPackageName()).appendPath(Integer.toString(resourceId))
                 .build();
-        showImage(resourceUri);
     }
 
     /**
@@ -455,9 +679,7 @@ public class Control {
      * @since 1
      */
     protected void showImage(final Uri uri) {
-        Bundle extras = createExtrasWithInstanceId();
-        extras.putString(SWR30.EXTRA_DISPLAY_DATA_URI, uri.toString());
-        sendMessageToHostapp(SWR30.MSG_DISPLAY_UPDATE, extras);
+        getFrameSender().showUri(uri.toString());
     }
 
     /**
@@ -467,13 +689,284 @@ public class Control {
      * {@value com.sonymobile.smartwear.swr30.Control.DisplaySize#DISPLAY_SIZE_LONGEST}*{@value com.sonymobile.smartwear.swr30.Control.DisplaySize#DISPLAY_SIZE_SHORTEST} or
      * {@value com.sonymobile.smartwear.swr30.Control.DisplaySize#DISPLAY_SIZE_SHORTEST}*{@value com.sonymobile.smartwear.swr30.Control.DisplaySize#DISPLAY_SIZE_LONGEST}.<br>
      * Landscape images are rotated on the accessory automatically depending on the left/right hand setting in the host application.
+     * The bitmap is copied, and then encoded and sent in the background in the format selected by {@link #setFrameFormat(int)}.
+     * No reference to the bitmap is kept, it may be modified or recycled, see {@link #recycleBitmap(android.graphics.Bitmap)}, as soon as this method returns.
      *
      * @since 1
      */
     protected void showImage(final Bitmap bitmap) {
-        Bundle extras = createExtrasWithInstanceId();
-        extras.putByteArray(SWR30.EXTRA_DISPLAY_DATA_RAW, bitmapToByteArray(bitmap));
-        sendMessageToHostapp(SWR30.MSG_DISPLAY_UPDATE, extras);
+        getFrameSender().showBitmap(bitmap);
+    }
+
+    /**
+     * Called to show a black and white frame on the accessory display, see {@link MonoFrame}. The frame is sent as it is, without any conversion,
+     * in the format selected by {@link #setFrameFormat(int)}.<br>
+     * The frame must have the size of the accessory display. It is copied before this method returns, so the control can continue drawing into it.
+     *
+     * @param frame The frame.
+     *
+     * @since 2
+     */
+    protected void showImage(final MonoFrame frame) {
+        if (frame == null) {
+            throw new IllegalArgumentException("frame == null");
+        }
+        getFrameSender().showFrame(frame);
+    }
+
+    /**
+     * Called to replace one region of the image on the accessory display, for example a progress bar, without drawing and sending a whole image.
+     * The bitmap is drawn with its top left corner at the top left corner of the region, and is cropped to the region and to the display.<br>
+     * The region is composed into the last image shown by {@link #showImage(android.graphics.Bitmap)} or {@link #showImage(MonoFrame)} since {@link #onStart()},
+     * and is ignored if there is none. With {@link Control.FrameFormat#FRAME_FORMAT_MONOCHROME} only the region, widened to whole bytes, is sent,
+     * otherwise the composed image is sent as a whole. Regions are never replaced by frame conflation, see {@link #setFrameConflation(boolean, long)},
+     * except by a whole image shown later.
+     *
+     * @param rect The region in display coordinates, in the orientation of the last image shown.
+     * @param bitmap The content of the region. The bitmap is copied before this method returns.
+     *
+     * @since 2
+     */
+    protected void showImageRegion(final Rect rect, final Bitmap bitmap) {
+        if (rect == null || bitmap == null) {
+            throw new IllegalArgumentException("rect == null || bitmap == null");
+        }
+        if (rect.isEmpty()) {
+            return;
+        }
+        getFrameSender().showRegion(rect, bitmap);
+    }
+
+    /**
+     * Called to play an animation on the accessory display, for example a loading indicator. All frames are converted and encoded once,
+     * in the background and in the format selected by {@link #setFrameFormat(int)}, so that each frame of the animation only costs sending it.<br>
+     * Frames are shown at a fixed rate. When sending falls behind, late frames are dropped to keep the timing. A frame identical to the frame
+     * already shown is not sent. The animation stops after the last frame unless it loops, when {@link #stopAnimation()} is called,
+     * when another image is shown, and when the control is stopped. Note that updates of the display may take up to 0.5 seconds.
+     *
+     * @param frames The frames, all of the same size, see {@link #showImage(android.graphics.Bitmap)}. The bitmaps are copied before this method returns.
+     * @param frameDurationMillis Time in milliseconds that each frame is shown.
+     * @param loop true to repeat the animation until it is stopped, false to stop at the last frame.
+     *
+     * @since 2
+     */
+    protected void startAnimation(final Bitmap[] frames, final long frameDurationMillis, final boolean loop) {
+        if (frames == null || frames.length == 0) {
+            throw new IllegalArgumentException("No frames");
+        }
+        for (Bitmap frame : frames) {
+            if (frame == null || frame.getWidth() != frames[0].getWidth() || frame.getHeight() != frames[0].getHeight()) {
+                throw new IllegalArgumentException("Frames must be of the same size");
+            }
+        }
+        if (frameDurationMillis <= 0) {
+            throw new IllegalArgumentException("frameDurationMillis <= 0");
+        }
+        getFrameSender().startAnimation(frames, frameDurationMillis, loop);
+    }
+
+    /**
+     * Called to play an animation of black and white frames, see {@link #startAnimation(android.graphics.Bitmap[], long, boolean)} and {@link MonoFrame}.
+     *
+     * @param frames The frames, all of the same size. The frames are copied before this method returns.
+     * @param frameDurationMillis Time in milliseconds that each frame is shown.
+     * @param loop true to repeat the animation until it is stopped, false to stop at the last frame.
+     *
+     * @since 2
+     */
+    protected void startAnimation(final MonoFrame[] frames, final long frameDurationMillis, final boolean loop) {
+        if (frames == null || frames.length == 0) {
+            throw new IllegalArgumentException("No frames");
+        }
+        for (MonoFrame frame : frames) {
+            if (frame == null || frame.getWidth() != frames[0].getWidth() || frame.getHeight() != frames[0].getHeight()) {
+                throw new IllegalArgumentException("Frames must be of the same size");
+            }
+        }
+        if (frameDurationMillis <= 0) {
+            throw new IllegalArgumentException("frameDurationMillis <= 0");
+        }
+        getFrameSender().startAnimation(frames, frameDurationMillis, loop);
+    }
+
+    /**
+     * Called to stop the animation started by {@link #startAnimation(android.graphics.Bitmap[], long, boolean)}. The frame shown last stays on the display.
+     *
+     * @since 2
+     */
+    protected void stopAnimation() {
+        getFrameSender().stopAnimation();
+    }
+
+    /**
+     * Returns the number of frames that were not sent by {@link #showImage(android.graphics.Bitmap)}, because they were identical to the image already shown on the display.
+     * Identical frames are detected on the black and white pixels, before compression, so redrawing a frame that has not changed, for example a clock where the
+     * displayed minute has not changed, costs neither compression nor communication with the accessory.
+     *
+     * @return number of suppressed frames since the control was created.
+     *
+     * @since 2
+     */
+    public int getSuppressedFrameCount() {
+        return mFrameSender != null ? mFrameSender.getSuppressedFrameCount() : 0;
+    }
+
+    /**
+     * Selects the format used to send bitmaps to the host application in {@link #showImage(android.graphics.Bitmap)}.
+     * The format of {@link #getStartImage()} and {@link #getPreviewImage()} is selected by {@link #getImageFormat()}.<br>
+     * {@link Control.FrameFormat#FRAME_FORMAT_MONOCHROME} avoids PNG compression of every frame, but requires a host application implementing API version 2,
+     * see <a href="R.attr.html#swr30ExtensionMinApiVersion">swr30ExtensionMinApiVersion</a>.
+     *
+     * @param format Any value defined in {@link Control.FrameFormat}. Default is {@link Control.FrameFormat#FRAME_FORMAT_PNG}.
+     *
+     * @since 2
+     */
+    protected void setFrameFormat(final int format) {
+        if (format != FrameFormat.FRAME_FORMAT_PNG && format != FrameFormat.FRAME_FORMAT_MONOCHROME) {
+            throw new IllegalArgumentException("Unknown frame format " + format);
+        }
+        mFrameFormat = format;
+    }
+
+    /**
+     * Selects how grey levels, for example anti-aliased text and photos, are converted to the pure black and white of the accessory display
+     * by {@link #showImage(android.graphics.Bitmap)}, {@link #getStartImage()} and {@link #getPreviewImage()}. The conversion is done before the image is sent,
+     * in both frame formats, so the image on the display is exactly what the control intended.
+     *
+     * @param mode Any value defined in {@link Control.DitherMode}. Default is {@link Control.DitherMode#DITHER_THRESHOLD}.
+     *
+     * @since 2
+     */
+    protected void setDitherMode(final int mode) {
+        if (mode != DitherMode.DITHER_THRESHOLD && mode != DitherMode.DITHER_ORDERED && mode != DitherMode.DITHER_ERROR_DIFFUSION) {
+            throw new IllegalArgumentException("Unknown dither mode " + mode);
+        }
+        mDitherMode = mode;
+    }
+
+    /**
+     * Enables conflation of frames sent by {@link #showImage(android.graphics.Bitmap)}. Bitmaps are always encoded and sent in the background.
+     * When conflation is enabled, a bitmap that is waiting to be encoded is replaced if a new bitmap is shown before it has been sent. Only the latest bitmap is sent,
+     * so a control that updates the display faster than the accessory can show it does not build up a queue of outdated frames.
+     * When conflation is disabled, every bitmap is sent, as soon as possible.
+     *
+     * @param enabled true to enable frame conflation. Default is false.
+     * @param minFrameIntervalMillis Minimum time in milliseconds between two frames when conflation is enabled, or 0 to send frames as soon as possible.
+     *
+     * @since 2
+     */
+    protected void setFrameConflation(final boolean enabled, final long minFrameIntervalMillis) {
+        if (minFrameIntervalMillis < 0) {
+            throw new IllegalArgumentException("minFrameIntervalMillis < 0");
+        }
+        mFrameConflationEnabled = enabled;
+        mMinFrameIntervalMillis = minFrameIntervalMillis;
+    }
+
+    /**
+     * Create a white bitmap of any size, taken from the pool of full screen bitmaps if possible.
+     *
+     * @param width width in pixels.
+     * @param height height in pixels.
+     * @return the bitmap, owned by the caller.
+     */
+    static Bitmap obtainBitmap(final int width, final int height) {
+        if (width == DisplaySize.DISPLAY_SIZE_SHORTEST && height == DisplaySize.DISPLAY_SIZE_LONGEST) {
+            return createBitmap(true);
+        } else if (width == DisplaySize.DISPLAY_SIZE_LONGEST && height == DisplaySize.DISPLAY_SIZE_SHORTEST) {
+            return createBitmap(false);
+        }
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        bitmap.setDensity(DisplayMetrics.DENSITY_DEFAULT);
+        bitmap.eraseColor(Color.WHITE);
+        return bitmap;
+    }
+
+    /**
+     * Enables delta updates of the display. When enabled, {@link #showImage(android.graphics.Bitmap)} compares the bitmap with the last image sent
+     * and only sends the changed regions, which is much less data for controls where small parts of the display change, such as clocks and timers.
+     * The whole image is still sent when a large part of it has changed, and for the first image after {@link #onStart()}.<br>
+     * Delta updates are only used together with {@link Control.FrameFormat#FRAME_FORMAT_MONOCHROME}, see {@link #setFrameFormat(int)}.
+     *
+     * @param enabled true to enable delta updates. Default is false.
+     *
+     * @since 2
+     */
+    protected void setDeltaUpdatesEnabled(final boolean enabled) {
+        mDeltaUpdatesEnabled = enabled;
+    }
+
+    /**
+     * Enables caching of the images shown by {@link #showImage(int)}. When enabled, a drawable resource is decoded and converted to black and white
+     * once by the control, instead of by the host application every time it is shown, and the converted frame is kept in a cache.
+     * Controls that cycle through a fixed set of images then only send the cached frames.<br>
+     * The cache is bounded by the total size of the frames, a 296*128 frame is 4736 bytes, and the least recently shown frames are removed first.
+     * It is shared by all controls of the extension, so that it survives the control being stopped, and it is as large as the largest size set by any control,
+     * but never larger than 1 MB.<br>
+     * The cache is only used together with {@link Control.FrameFormat#FRAME_FORMAT_MONOCHROME}, see {@link #setFrameFormat(int)}.
+     * Drawables are decoded without scaling, as for images in res/drawable-nodpi. Drawables that do not have the size of the accessory display
+     * are not cached, and are sent as before for the host application to scale.
+     *
+     * @param maxSizeBytes Maximum size of the cache in bytes, or 0 to disable the cache for this control. Default is 0.
+     *
+     * @since 2
+     */
+    protected void setResourceCacheSize(final int maxSizeBytes) {
+        if (maxSizeBytes < 0) {
+            throw new IllegalArgumentException("maxSizeBytes < 0");
+        }
+        sResourceFrameCache.ensureMaxSize(maxSizeBytes);
+        mResourceCacheEnabled = maxSizeBytes > 0;
+    }
+
+    /**
+     * Selects the codec used to compress packed frames sent by {@link #showImage(android.graphics.Bitmap)}, including delta updates.
+     * {@link Control.FrameCodec#FRAME_CODEC_RLE} makes frames that are mostly white, such as a few lines of text, many times smaller at a very low cost.
+     * A frame is sent uncompressed whenever encoding would not make it smaller, so the host application is always told which codec was used.<br>
+     * The codec is only used together with {@link Control.FrameFormat#FRAME_FORMAT_MONOCHROME}, see {@link #setFrameFormat(int)}.
+     *
+     * @param codec Any value defined in {@link Control.FrameCodec}. Default is {@link Control.FrameCodec#FRAME_CODEC_NONE}.
+     *
+     * @since 2
+     */
+    protected void setFrameCodec(final int codec) {
+        if (codec != FrameCodec.FRAME_CODEC_NONE && codec != FrameCodec.FRAME_CODEC_RLE) {
+            throw new IllegalArgumentException("Unknown frame codec " + codec);
+        }
+        mFrameCodec = codec;
+    }
+
+    /**
+     * Enables sending frames through shared memory. When enabled, a shared memory region is created the first time {@link #showImage(android.graphics.Bitmap)}
+     * sends a frame and passed once to the host application. Frames are then written to the region, and each display update only carries where
+     * to find the frame, which avoids copying every frame through the binder. The region is closed when the control is stopped.<br>
+     * Shared memory requires Android 8.1 (API level 27). On older versions, and for frames that do not fit in the region, the frame is sent in the message as before.
+     * Requires a host application implementing API version 2, see <a href="R.attr.html#swr30ExtensionMinApiVersion">swr30ExtensionMinApiVersion</a>.
+     *
+     * @param enabled true to send frames through shared memory. Default is false.
+     *
+     * @since 2
+     */
+    protected void setSharedMemoryEnabled(final boolean enabled) {
+        mSharedMemoryEnabled = enabled;
+    }
+
+    /**
+     * Enables chunked transfer of frames sent by {@link #showImage(android.graphics.Bitmap)}. Frame data larger than the chunk size, such as
+     * a PNG of a detailed photo, is split into parts of at most that size. The parts are sent one after another, followed by the display update,
+     * so that no single message to the host application exceeds the binder transaction size limit and the frame is not dropped.<br>
+     * Frames sent through shared memory are not split, see {@link #setSharedMemoryEnabled(boolean)}.
+     * Requires a host application implementing API version 2, see <a href="R.attr.html#swr30ExtensionMinApiVersion">swr30ExtensionMinApiVersion</a>.
+     *
+     * @param chunkSize Maximum number of frame data bytes per message, or 0 to send frame data in one message. Default is 0.
+     *
+     * @since 2
+     */
+    protected void setChunkSize(final int chunkSize) {
+        if (chunkSize < 0) {
+            throw new IllegalArgumentException("chunkSize < 0");
+        }
+        mChunkSize = chunkSize;
     }
 
     /**
@@ -502,8 +995,7 @@ public class Control {
      * @since 1
      */
     protected void vibrateStop() {
-        Bundle extras = createExtrasWithInstanceId();
-        sendMessageToHostapp(SWR30.MSG_VIBRATE_STOP, extras);
+        sendMessageToHostapp(SWR30.MSG_VIBRATE_STOP, getInstanceIdExtras());
     }
 
     /**
@@ -512,8 +1004,7 @@ public class Control {
      * @since 1
      */
     protected void requestStop() {
-        Bundle extras = createExtrasWithInstanceId();
-        sendMessageToHostapp(SWR30.MSG_STOP_REQUEST, extras);
+        sendMessageToHostapp(SWR30.MSG_STOP_REQUEST, getInstanceIdExtras());
     }
 
     /**
@@ -538,9 +1029,36 @@ public class Control {
      * @since 1
      */
     protected void setSmartAlarm(final long alarmTimeLatest) {
-        Bundle extras = createExtrasWithInstanceId();
-        extras.putLong(SWR30.EXTRA_ALARM_TIME_LATEST, alarmTimeLatest);
-        sendMessageToHostapp(SWR30.MSG_SET_SMART_ALARM, extras);
+        if (!isAlarmRequestPending(alarmTimeLatest)) {
+            sendSmartAlarmRequest(alarmTimeLatest, UNTRACKED_ALARM_REQUEST);
+        }
+    }
+
+    /**
+     * Call this to set a smart alarm and get the result, see {@link #setSmartAlarm(long)}. If the same alarm is already being set, no new request is sent
+     * and the result of that request is returned. {@link Control#onSetAlarmResult(int)} is called as well.
+     *
+     * @param alarmTimeLatest The latest time at which to wake the user, see {@link #setSmartAlarm(long)}.
+     * @param callback Called with any value defined in {@link Control.AlarmResult}, or null.
+     * @return The pending result.
+     *
+     * @since 2
+     */
+    protected PendingResult<Integer> setSmartAlarm(final long alarmTimeLatest, final PendingResult.Callback<Integer> callback) {
+        PendingResult<Integer> request = mAlarmRequests.peekLast();
+        if (!isAlarmRequestPending(alarmTimeLatest)) {
+            request = new PendingResult<Integer>(getHandler(), REQUEST_TIMEOUT_MILLIS);
+            sendSmartAlarmRequest(alarmTimeLatest, request);
+        } else if (request == UNTRACKED_ALARM_REQUEST) {
+            // The same alarm is being set by setSmartAlarm(long), the result takes its place
+            request = new PendingResult<Integer>(getHandler(), REQUEST_TIMEOUT_MILLIS);
+            mAlarmRequests.pollLast();
+            mAlarmRequests.addLast(request);
+        }
+        if (callback != null) {
+            request.addCallback(callback);
+        }
+        return request;
     }
 
     /**
@@ -564,30 +1082,294 @@ public class Control {
 
     /**
      * Call this to request battery status, see {@link com.sonymobile.smartwear.swr30.Control#onBatteryStatus(boolean, int)}.
+     * If a status fresher than {@link #setBatteryStatusMaxAge(long)} has been received, the callback is posted with it without asking the host application.
      *
      * @since 1
      */
     protected void requestBatteryStatus() {
+        if (getCachedBatteryStatus() != null) {
+            getHandler().post(mDeliverCachedBatteryStatus);
+            return;
+        }
+        sendBatteryStatusRequest();
+    }
+
+    /**
+     * Call this to request battery status and get the result. If a request is already in flight, no new request is sent and the result of that
+     * request is returned, so callers that ask at the same time share one round trip. {@link Control#onBatteryStatus(boolean, int)} is called as well when the reply arrives.<br>
+     * If a status fresher than {@link #setBatteryStatusMaxAge(long)} has been received, a completed result is returned instead and the callback is
+     * called before this method returns.
+     *
+     * @param callback Called with the battery status, or null.
+     * @return The pending result.
+     *
+     * @since 2
+     */
+    protected PendingResult<BatteryStatus> requestBatteryStatus(final PendingResult.Callback<BatteryStatus> callback) {
+        final BatteryStatus cached = getCachedBatteryStatus();
+        if (cached != null) {
+            final PendingResult<BatteryStatus> result = new PendingResult<BatteryStatus>(cached);
+            if (callback != null) {
+                result.addCallback(callback);
+            }
+            return result;
+        }
+        PendingResult<BatteryStatus> request = mBatteryRequest;
+        if (request == null || request.isDone()) {
+            request = new PendingResult<BatteryStatus>(getHandler(), REQUEST_TIMEOUT_MILLIS);
+            mBatteryRequest = request;
+        }
+        sendBatteryStatusRequest();
+        if (callback != null) {
+            request.addCallback(callback);
+        }
+        return request;
+    }
+
+    /**
+     * Ask the host application for the battery status, unless a request sent less than {@link #REQUEST_TIMEOUT_MILLIS} ago is still waiting for its reply.
+     * Does not allocate, so that controls polling the battery status do not create garbage.
+     */
+    private void sendBatteryStatusRequest() {
+        final long now = SystemClock.uptimeMillis();
+        if (mBatteryRequestInFlight && now - mBatteryRequestTime < REQUEST_TIMEOUT_MILLIS) {
+            return;
+        }
+        mBatteryRequestInFlight = true;
+        mBatteryRequestTime = now;
+        sendMessageToHostapp(SWR30.MSG_REQUEST_BATTERY_STATUS, getInstanceIdExtras());
+    }
+
+    /**
+     * Called to let {@link #requestBatteryStatus()} answer from the last battery status received, as long as it is not older than the given age.
+     * Controls that show the battery level on every start or redraw then only ask the host application, and the accessory, once per period.
+     * The last status is shared by all controls.
+     *
+     * @param maxAgeMillis Maximum age of the last status in milliseconds, or 0 to always ask the host application. Default is 0.
+     *
+     * @since 2
+     */
+    protected void setBatteryStatusMaxAge(final long maxAgeMillis) {
+        if (maxAgeMillis < 0) {
+            throw new IllegalArgumentException("maxAgeMillis < 0");
+        }
+        mBatteryStatusMaxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * @return The last battery status received, or null if there is none or it is older than allowed by {@link #setBatteryStatusMaxAge(long)}.
+     */
+    private BatteryStatus getCachedBatteryStatus() {
+        final BatteryStatus status = sBatteryStatus;
+        if (status == null || SystemClock.elapsedRealtime() - status.getElapsedRealtime() >= mBatteryStatusMaxAgeMillis) {
+            return null;
+        }
+        return status;
+    }
+
+    /**
+     * Called to receive taps and key events in {@link #onInputBatch(InputBatch)} instead of {@link #onTap(long)} and {@link #onKey(int, long)}.
+     * Events are recorded as they arrive, and delivered together once the messages already waiting on the thread of the control have been handled.
+     *
+     * @param enabled true to receive events in batches. Default is false.
+     *
+     * @since 2
+     */
+    protected void setInputBatchingEnabled(final boolean enabled) {
+        if (enabled && mInputBatch == null) {
+            mInputBatch = new InputBatch();
+        }
+        mInputBatchingEnabled = enabled;
+    }
+
+    /**
+     * Record an input event, and schedule delivery of the batch after the messages already queued.
+     */
+    private void addInputEvent(final int type, final int keyEvent, final long timestamp) {
+        mInputBatch.add(type, keyEvent, timestamp);
+        if (!mInputBatchScheduled) {
+            mInputBatchScheduled = true;
+            getHandler().post(mDeliverInputBatch);
+        }
+    }
+
+    /**
+     * @return true if the last alarm request sent was for the same time, and is still waiting for its reply.
+     */
+    private boolean isAlarmRequestPending(final long alarmTimeLatest) {
+        final PendingResult<Integer> request = mAlarmRequests.peekLast();
+        return request != null && mLastAlarmTime == alarmTimeLatest && (request == UNTRACKED_ALARM_REQUEST || !request.isDone());
+    }
+
+    /**
+     * Ask the host application to set a smart alarm. The request is queued until its reply arrives, also after it has timed out,
+     * so that each reply is matched with its own request.
+     */
+    private void sendSmartAlarmRequest(final long alarmTimeLatest, final PendingResult<Integer> request) {
+        mAlarmRequests.addLast(request);
+        mLastAlarmTime = alarmTimeLatest;
         Bundle extras = createExtrasWithInstanceId();
-        sendMessageToHostapp(SWR30.MSG_REQUEST_BATTERY_STATUS, extras);
+        extras.putLong(SWR30.EXTRA_ALARM_TIME_LATEST, alarmTimeLatest);
+        sendMessageToHostapp(SWR30.MSG_SET_SMART_ALARM, extras);
+    }
+
+    /**
+     * Fail the requests waiting for a reply, when the control is stopped.
+     */
+    private void cancelRequests() {
+        final PendingResult<BatteryStatus> batteryRequest = mBatteryRequest;
+        mBatteryRequest = null;
+        mBatteryRequestInFlight = false;
+        if (batteryRequest != null) {
+            batteryRequest.fail(PendingResult.Failure.FAILURE_CANCELLED);
+        }
+        PendingResult<Integer> alarmRequest;
+        while ((alarmRequest = mAlarmRequests.pollFirst()) != null) {
+            alarmRequest.fail(PendingResult.Failure.FAILURE_CANCELLED);
+        }
     }
 
     /**
-     * Send message to the host application.
+     * Called to collect the following commands of this control into one message to the host application, for example a vibration, an image and
+     * {@link #setAutoStopMode(int)} in response to a tap. The host application applies them together and in order. The message is sent after
+     * {@link #commitBatch()} has been called, as soon as the images shown during the batch have been encoded. Commands sent after the commit
+     * are held until then, so that they reach the host application after the batch.<br>
+     * Batches require a host application implementing API version 2, see <a href="R.attr.html#swr30ExtensionMinApiVersion">swr30ExtensionMinApiVersion</a>.
+     *
+     * @throws IllegalStateException if a batch has already begun.
+     *
+     * @since 2
+     */
+    protected void beginBatch() {
+        if (mBatch != null) {
+            throw new IllegalStateException("Batch already begun");
+        }
+        mBatch = new CommandBatch(this);
+    }
+
+    /**
+     * Called to send the commands collected since {@link #beginBatch()}, once the images shown during the batch have been encoded.
+     * A batch of one command is sent as a normal message.
+     *
+     * @throws IllegalStateException if no batch has begun.
+     *
+     * @since 2
+     */
+    protected void commitBatch() {
+        if (mBatch == null) {
+            throw new IllegalStateException("No batch begun");
+        }
+        final CommandBatch batch = mBatch;
+        mBatch = null;
+        // A batch committed earlier and still waiting for its images goes first
+        if (mCommittedBatch != null) {
+            mCommittedBatch.holdBatch(batch);
+        }
+        mCommittedBatch = batch.commit() ? null : batch;
+    }
+
+    /**
+     * Send message to the host application, add it to the batch begun by {@link #beginBatch()}, or hold it until the committed batch has been sent.
      *
      * @param what the message type.
      * @param extras the message argument
      */
     void sendMessageToHostapp(final int what, final Bundle extras) {
+        if (mBatch != null) {
+            mBatch.add(what, extras);
+            return;
+        }
+        if (mCommittedBatch != null) {
+            if (mCommittedBatch.hold(what, extras)) {
+                return;
+            }
+            mCommittedBatch = null;
+        }
+        deliverMessageToHostapp(what, extras);
+    }
+
+    /**
+     * Send message to the host application now, on the calling thread. Commands are sent by the control thread, display updates by the encode thread,
+     * see {@link FrameSender}, and start and preview images by the encode thread when it has no display update due, see {@link BackgroundQueue}.
+     * A command such as a vibration therefore never waits behind the frames queued on the encode thread, and a frame never waits behind a start image.
+     *
+     * @param what the message type.
+     * @param extras the message argument
+     */
+    void deliverMessageToHostapp(final int what, final Bundle extras) {
         Message respMsg = Message.obtain(null, what, extras);
         try {
-            Dbg.d("sendMessageToHostapp " + what);
+            Dbg.d("sendMessageToHostapp ", what);
             mMessengerToHostApp.send(respMsg);
         } catch (RemoteException e) {
             Dbg.e("RemoteException: ", e);
         }
     }
 
+    /**
+     * Set the handlers of the thread that delivers messages to this control, and of the thread that encodes display updates.
+     *
+     * @param handler the handler of the control thread.
+     * @param encodeHandler the handler of the encode thread.
+     * @param backgroundQueue the background work of the encode thread.
+     */
+    void setHandlers(final Handler handler, final Handler encodeHandler, final BackgroundQueue backgroundQueue) {
+        mHandler = handler;
+        mEncodeHandler = encodeHandler;
+        mBackgroundQueue = backgroundQueue;
+    }
+
+    /**
+     * Returns the handler of the thread that delivers messages to this control.
+     *
+     * @return the handler.
+     */
+    Handler getHandler() {
+        if (mHandler == null) {
+            Looper looper = Looper.myLooper();
+            mHandler = new Handler(looper != null ? looper : Looper.getMainLooper());
+        }
+        return mHandler;
+    }
+
+    /**
+     * Returns the display path of this control. Display updates are encoded on the encode thread, or on the control thread
+     * if the control was not created by the {@link ExtensionService}.
+     *
+     * @return the frame sender.
+     */
+    FrameSender getFrameSender() {
+        if (mFrameSender == null) {
+            mFrameSender = new FrameSender(this, mEncodeHandler != null ? mEncodeHandler : getHandler());
+        }
+        return mFrameSender;
+    }
+
+    /**
+     * Returns the background work of the encode thread, or of the control thread if the control was not created by the {@link ExtensionService}.
+     *
+     * @return the background queue.
+     */
+    BackgroundQueue getBackgroundQueue() {
+        if (mBackgroundQueue == null) {
+            mBackgroundQueue = new BackgroundQueue(mEncodeHandler != null ? mEncodeHandler : getHandler());
+        }
+        return mBackgroundQueue;
+    }
+
+    /**
+     * Returns a Bundle with only the control instance ID, shared by all messages without other extras, so that sending them does not allocate.
+     * Messages to the host application are written to a parcel when sent, so the Bundle can be sent again and again, but it must never be modified.
+     *
+     * @return Bundle with control instance ID.
+     */
+    Bundle getInstanceIdExtras() {
+        if (mInstanceIdExtras == null) {
+            mInstanceIdExtras = createExtrasWithInstanceId();
+        }
+        return mInstanceIdExtras;
+    }
+
     /**
      * Create a Bundle with control instance ID.
      *
@@ -649,18 +1431,97 @@ public class Control {
     }
 
     /**
-     * This function is used internally to pack a bitmap into a byte array before sending them to host application.
+     * Send a start or preview image to the host application. The image is copied on the control thread, and then encoded, written to the image cache
+     * and sent as background work on the encode thread, see {@link BackgroundQueue}.
+     *
+     * @param what the message type.
+     * @param type the image type, see {@link ImageCache}.
+     * @param rawKey extra used for PNG data.
+     * @param monochromeKey extra used for packed monochrome data.
+     * @param bitmap The bitmap, or null.
+     */
+    void sendImage(final int what, final int type, final String rawKey, final String monochromeKey, final Bitmap bitmap) {
+        // The control may draw to its bitmap again as soon as it has returned it
+        final Bitmap copy = bitmap != null ? obtainBitmap(bitmap.getWidth(), bitmap.getHeight()) : null;
+        if (copy != null) {
+            final Canvas canvas = new Canvas(copy);
+            canvas.setDensity(Bitmap.DENSITY_NONE);
+            canvas.drawBitmap(bitmap, 0, 0, null);
+        }
+        final int format = getImageFormat();
+        final int ditherMode = mDitherMode;
+        final String versionKey = getImageVersionKey();
+        getBackgroundQueue().post(new Runnable() {
+            @Override
+            public void run() {
+                final Bundle extras = createExtrasWithInstanceId();
+                putImage(extras, rawKey, monochromeKey, copy, format, ditherMode);
+                if (copy != null) {
+                    sBitmapPool.release(copy);
+                }
+                cacheImage(type, extras, rawKey, monochromeKey, versionKey);
+                deliverMessageToHostapp(what, extras);
+            }
+        });
+    }
+
+    /**
+     * Write an image to the disk cache if enabled by {@link #getImageVersionKey()}.
+     *
+     * @param type the image type, see {@link ImageCache}.
+     * @param extras the message extras holding the image.
+     * @param rawKey extra used for PNG data.
+     * @param monochromeKey extra used for packed monochrome data.
+     * @param versionKey the version key, or null if caching is disabled.
+     */
+    void cacheImage(final int type, final Bundle extras, final String rawKey, final String monochromeKey, final String versionKey) {
+        if (versionKey == null) {
+            return;
+        }
+        byte[] monochrome = extras.getByteArray(monochromeKey);
+        if (monochrome != null) {
+            ImageCache.write(mContext, type, mControlInstanceId, versionKey, monochromeKey, extras.getInt(SWR30.EXTRA_IMAGE_WIDTH), monochrome);
+        } else {
+            ImageCache.write(mContext, type, mControlInstanceId, versionKey, rawKey, 0, extras.getByteArray(rawKey));
+        }
+    }
+
+    /**
+     * Put a start or preview image into message extras. Called on the encode thread.
+     *
+     * @param extras the message extras.
+     * @param rawKey extra used for PNG data.
+     * @param monochromeKey extra used for packed monochrome data.
+     * @param bitmap The bitmap.
+     * @param format the format, see {@link #getImageFormat()}.
+     * @param ditherMode the dither mode, see {@link #setDitherMode(int)}.
+     */
+    void putImage(final Bundle extras, final String rawKey, final String monochromeKey, final Bitmap bitmap, final int format, final int ditherMode) {
+        mMonochromeEncoder.setDitherMode(ditherMode);
+        if (bitmap != null && format == FrameFormat.FRAME_FORMAT_MONOCHROME) {
+            extras.putByteArray(monochromeKey, mMonochromeEncoder.encode(bitmap));
+            extras.putInt(SWR30.EXTRA_IMAGE_WIDTH, bitmap.getWidth());
+        } else {
+            extras.putByteArray(rawKey, encodePng(bitmap));
+        }
+    }
+
+    /**
+     * Convert a bitmap to black and white according to {@link #setDitherMode(int)} and compress it to PNG.
      *
      * @param bitmap The bitmap.
      * @return byte array.
      */
-    static byte[] bitmapToByteArray(Bitmap bitmap) {
+    byte[] encodePng(final Bitmap bitmap) {
         if (bitmap == null) {
             return null;
         }
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
-        bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
-        return outputStream.toByteArray();
+        final int size = MonochromeEncoder.getFrameSize(bitmap.getWidth(), bitmap.getHeight());
+        if (mImageBuffer == null || mImageBuffer.length != size) {
+            mImageBuffer = new byte[size];
+        }
+        mMonochromeEncoder.encode(bitmap, mImageBuffer);
+        return mMonochromeEncoder.encodePng(mImageBuffer, bitmap.getWidth(), bitmap.getHeight());
     }
 
     /**
@@ -823,6 +1684,82 @@ public class Control {
         int DISPLAY_SIZE_SHORTEST = SWR30.DisplaySize.DISPLAY_SIZE_SHORTEST;
     }
 
+    /**
+     * Frame format constants. Used in {@link #setFrameFormat(int)}.
+     */
+    public interface FrameFormat {
+
+        /**
+         * Bitmaps are compressed to PNG, supported by all host applications.
+         * <p>
+         * This is default behavior.
+         * </p>
+         *
+         * @since 2
+         */
+        int FRAME_FORMAT_PNG = 0;
+
+        /**
+         * Bitmaps are converted to packed 1-bit frames, one bit per pixel, which is much cheaper than PNG compression.
+         *
+         * @since 2
+         */
+        int FRAME_FORMAT_MONOCHROME = 1;
+    }
+
+    /**
+     * Frame codec constants. Used in {@link #setFrameCodec(int)}.
+     */
+    public interface FrameCodec {
+
+        /**
+         * Packed frames are sent as they are.
+         * <p>
+         * This is default behavior.
+         * </p>
+         *
+         * @since 2
+         */
+        int FRAME_CODEC_NONE = SWR30.FrameCodec.FRAME_CODEC_NONE;
+
+        /**
+         * Packed frames are run-length encoded, see {@link RleCodec}.
+         *
+         * @since 2
+         */
+        int FRAME_CODEC_RLE = SWR30.FrameCodec.FRAME_CODEC_RLE;
+    }
+
+    /**
+     * Dither mode constants. Used in {@link #setDitherMode(int)}.
+     */
+    public interface DitherMode {
+
+        /**
+         * Pixels darker than mid grey are black, all other pixels are white. Best for text and line art.
+         * <p>
+         * This is default behavior.
+         * </p>
+         *
+         * @since 2
+         */
+        int DITHER_THRESHOLD = 0;
+
+        /**
+         * Ordered dithering with an 8x8 Bayer matrix. Grey levels become regular patterns, which is suitable for gradients and stays stable between frames.
+         *
+         * @since 2
+         */
+        int DITHER_ORDERED = 1;
+
+        /**
+         * Floyd-Steinberg error diffusion. Gives the most detail for photos.
+         *
+         * @since 2
+         */
+        int DITHER_ERROR_DIFFUSION = 2;
+    }
+
     /**
      * Text size constants.
      */
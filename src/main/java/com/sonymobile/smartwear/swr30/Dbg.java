@@ -108,6 +108,16 @@ public final class Dbg {
         }
     }
 
+    /**
+     * Calls {@link android.util.Log#d(String, String)} with a value appended to the message if logs are enabled.
+     * The message is only built when it is logged, so the call does not allocate when logs are disabled.
+     * */
+    public static void d(String s, int value) {
+        if (isLogEnabled()) {
+            android.util.Log.d(LOG_TAG, s + value);
+        }
+    }
+
     /**
      * Change the log tag, to differentiate from other SWR30 applications installed.
      * @param tag The log tag that shall be used.
@@ -90,7 +90,17 @@ public class ExtensionService extends Service implements IncomingHandler.Connect
             }
         });
 
-        mIncomingHandler = new IncomingHandler(this, thread.getLooper());
+        // Display updates are encoded on a separate thread, so that input is never delayed by image compression
+        HandlerThread encodeThread = new HandlerThread("ExtensionServiceEncodeThread",
+                Process.THREAD_PRIORITY_BACKGROUND);
+        encodeThread.start();
+        encodeThread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            public void uncaughtException(Thread t, Throwable e) {
+                Dbg.e("uncaughtException", e);
+            }
+        });
+
+        mIncomingHandler = new IncomingHandler(this, thread.getLooper(), encodeThread.getLooper());
         mIncomingHandler.registerConnectionStatusListener(this);
         mReceivingMessenger = new Messenger(mIncomingHandler);
     }
@@ -111,6 +121,7 @@ public class ExtensionService extends Service implements IncomingHandler.Connect
                 @Override
                 public void run() {
                     mIncomingHandler.stopStartedControl();
+                    mIncomingHandler.mEncodeHandler.getLooper().quitSafely();
                     mIncomingHandler.getLooper().quitSafely();
                 }
             });
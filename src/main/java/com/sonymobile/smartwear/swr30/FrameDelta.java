@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the last packed monochrome frame sent to the host application, detects identical frames
+ * and computes the changed regions of a new frame, see {@link SWR30#MSG_DISPLAY_UPDATE_DELTA}.<br>
+ * Changed rows are grouped into bands, each band is sent as one rectangle spanning the changed bytes of its rows.
+ * The horizontal bounds of a rectangle are therefore always aligned to 8 pixels.
+ */
+final class FrameDelta {
+
+    /**
+     * Maximum number of rectangles in one delta update.
+     */
+    static final int MAX_RECTS = 16;
+
+    /**
+     * Unchanged rows between two changed rows that still keep them in the same rectangle.
+     */
+    static final int MAX_ROW_GAP = 4;
+
+    private byte[] mPrevious;
+    private int mWidth;
+    private int mHeight;
+    private int mPreviousHash;
+
+    private final int[] mRects = new int[MAX_RECTS * 4];
+    private int mRectCount;
+    private int mDataLength;
+
+    /**
+     * Forget the last frame, so the next frame is sent in full.
+     */
+    void reset() {
+        mPrevious = null;
+    }
+
+    /**
+     * Hash of a packed frame, used to detect identical frames cheaply.
+     *
+     * @param frame the packed frame.
+     * @return the hash.
+     */
+    static int hash(final byte[] frame) {
+        int hash = 1;
+        for (byte b : frame) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    /**
+     * Remember a frame as the last frame sent. The frame is kept by reference and must not be modified afterwards.
+     *
+     * @param frame the packed frame.
+     * @param width width in pixels.
+     * @param height height in pixels.
+     * @param hash the hash of the frame, see {@link #hash(byte[])}.
+     */
+    void setPrevious(final byte[] frame, final int width, final int height, final int hash) {
+        mPrevious = frame;
+        mWidth = width;
+        mHeight = height;
+        mPreviousHash = hash;
+    }
+
+    /**
+     * Check if a frame is identical to the last frame sent.
+     *
+     * @param frame the packed frame.
+     * @param width width in pixels.
+     * @param height height in pixels.
+     * @param hash the hash of the frame, see {@link #hash(byte[])}.
+     * @return true if identical.
+     */
+    boolean isPrevious(final byte[] frame, final int width, final int height, final int hash) {
+        // Only compare the pixels if the hash matches
+        return mPrevious != null && hash == mPreviousHash && width == mWidth && height == mHeight
+                && Arrays.equals(frame, mPrevious);
+    }
+
+    /**
+     * Compute the changed regions between the last frame and a new frame.
+     *
+     * @param frame the new packed frame.
+     * @param width width in pixels.
+     * @param height height in pixels.
+     * @return true if a delta update should be sent, see {@link #getRects()} and {@link #getData()}.
+     * False if the whole frame should be sent instead, because there is no comparable last frame or too much has changed.
+     */
+    boolean compute(final byte[] frame, final int width, final int height) {
+        mRectCount = 0;
+        mDataLength = 0;
+        if (mPrevious == null || width != mWidth || height != mHeight) {
+            return false;
+        }
+        final int stride = MonochromeEncoder.getStride(width);
+        int bandTop = -1;
+        int bandBottom = -1;
+        int bandLeft = 0;
+        int bandRight = 0;
+        for (int y = 0; y < height; y++) {
+            final int offset = y * stride;
+            int left = 0;
+            while (left < stride && frame[offset + left] == mPrevious[offset + left]) {
+                left++;
+            }
+            if (left == stride) {
+                continue;
+            }
+            int right = stride - 1;
+            while (frame[offset + right] == mPrevious[offset + right]) {
+                right--;
+            }
+            if (bandTop >= 0 && y - bandBottom > MAX_ROW_GAP) {
+                if (!addRect(bandLeft, bandTop, bandRight, bandBottom)) {
+                    return false;
+                }
+                bandTop = -1;
+            }
+            if (bandTop < 0) {
+                bandTop = y;
+                bandLeft = left;
+                bandRight = right;
+            } else {
+                bandLeft = Math.min(bandLeft, left);
+                bandRight = Math.max(bandRight, right);
+            }
+            bandBottom = y;
+        }
+        if (bandTop >= 0 && !addRect(bandLeft, bandTop, bandRight, bandBottom)) {
+            return false;
+        }
+        // Not worth a delta if the regions are close to the size of the frame
+        return mDataLength <= frame.length / 2;
+    }
+
+    /**
+     * Create a new frame from the last frame, with a region replaced, see {@link SWR30#MSG_DISPLAY_UPDATE_REGION}.
+     * The region is clipped to the frame, and the byte aligned rectangle covering it is available from {@link #getRects()} and {@link #getData(byte[])}.
+     *
+     * @param region the packed region.
+     * @param x left edge of the region in the frame.
+     * @param y top edge of the region in the frame.
+     * @param width width of the region in pixels.
+     * @param height height of the region in pixels.
+     * @param out destination of the new frame, of the size of the last frame and not the last frame itself.
+     * @return the new frame, or null if there is no last frame.
+     */
+    byte[] compose(final byte[] region, final int x, final int y, final int width, final int height, final byte[] out) {
+        mRectCount = 0;
+        mDataLength = 0;
+        if (mPrevious == null) {
+            return null;
+        }
+        final byte[] frame = out;
+        System.arraycopy(mPrevious, 0, frame, 0, mPrevious.length);
+        final int left = Math.max(x, 0);
+        final int top = Math.max(y, 0);
+        final int right = Math.min(x + width, mWidth);
+        final int bottom = Math.min(y + height, mHeight);
+        if (right <= left || bottom <= top) {
+            return frame;
+        }
+        final int stride = MonochromeEncoder.getStride(mWidth);
+        final int regionStride = MonochromeEncoder.getStride(width);
+        for (int row = top; row < bottom; row++) {
+            final int regionRow = (row - y) * regionStride;
+            for (int column = left; column < right; column++) {
+                final int regionColumn = column - x;
+                final int mask = 0x80 >>> (column & 7);
+                final int index = row * stride + (column >> 3);
+                if ((region[regionRow + (regionColumn >> 3)] & (0x80 >>> (regionColumn & 7))) != 0) {
+                    frame[index] |= mask;
+                } else {
+                    frame[index] &= ~mask;
+                }
+            }
+        }
+        addRect(left >> 3, top, (right - 1) >> 3, bottom - 1);
+        return frame;
+    }
+
+    private boolean addRect(final int leftByte, final int top, final int rightByte, final int bottom) {
+        if (mRectCount == MAX_RECTS) {
+            return false;
+        }
+        int index = mRectCount * 4;
+        mRects[index] = leftByte * 8;
+        mRects[index + 1] = top;
+        mRects[index + 2] = (rightByte - leftByte + 1) * 8;
+        mRects[index + 3] = bottom - top + 1;
+        mDataLength += (rightByte - leftByte + 1) * (bottom - top + 1);
+        mRectCount++;
+        return true;
+    }
+
+    /**
+     * @return width in pixels of the last frame.
+     */
+    int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return height in pixels of the last frame.
+     */
+    int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Number of rectangles found by the last call to {@link #compute(byte[], int, int)}.
+     *
+     * @return number of rectangles.
+     */
+    int getRectCount() {
+        return mRectCount;
+    }
+
+    /**
+     * The rectangles found by the last call to {@link #compute(byte[], int, int)}.
+     *
+     * @return x, y, width and height in pixels of each rectangle.
+     */
+    int[] getRects() {
+        return Arrays.copyOf(mRects, mRectCount * 4);
+    }
+
+    /**
+     * Copy the regions found by the last call to {@link #compute(byte[], int, int)} out of a frame.
+     *
+     * @param frame the new packed frame.
+     * @return the packed rows of each rectangle, one rectangle after another.
+     */
+    byte[] getData(final byte[] frame) {
+        final int stride = MonochromeEncoder.getStride(mWidth);
+        byte[] data = new byte[mDataLength];
+        int index = 0;
+        for (int i = 0; i < mRectCount * 4; i += 4) {
+            final int leftByte = mRects[i] / 8;
+            final int bytes = mRects[i + 2] / 8;
+            final int bottom = mRects[i + 1] + mRects[i + 3];
+            for (int y = mRects[i + 1]; y < bottom; y++) {
+                System.arraycopy(frame, y * stride + leftByte, data, index, bytes);
+                index += bytes;
+            }
+        }
+        return data;
+    }
+}
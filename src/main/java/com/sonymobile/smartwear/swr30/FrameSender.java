@@ -0,0 +1,788 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * The display path of a {@link Control}, used by {@link Control#showImage(android.graphics.Bitmap)}, {@link Control#showImage(MonoFrame)}
+ * and {@link Control#showImage(android.net.Uri)}.<br>
+ * Bitmaps and frames are copied on the thread of the control, and then converted, compared, encoded and sent on the encode thread of the
+ * {@link ExtensionService}, so that compression never delays the handling of input such as taps. All display updates of a control are sent
+ * in order on the encode thread. Every frame is sent, unless frame conflation is enabled: then at most one full frame is queued per control,
+ * it is replaced by a newer frame, and frames are paced by the minimum frame interval.<br>
+ * Animations are encoded on the encode thread before they start, and then paced on the encode thread against {@link android.os.SystemClock#uptimeMillis()}.
+ */
+final class FrameSender {
+
+    private final Control mControl;
+    private final Handler mHandler;
+
+    // Control thread
+    private Canvas mSnapshotCanvas;
+    private boolean mAnimationStarted;
+
+    // Guarded by mQueue
+    private final ArrayDeque<Frame> mQueue = new ArrayDeque<Frame>();
+    private boolean mDrainScheduled;
+    private long mLastFrameTime;
+
+    // Encode thread
+    private final MonochromeEncoder mEncoder = new MonochromeEncoder();
+    private final FrameDelta mFrameDelta = new FrameDelta();
+    // Frames are encoded into one buffer while the last frame sent, kept by mFrameDelta, may be in the other
+    private byte[] mFrameBuffer;
+    private byte[] mSpareFrameBuffer;
+    private byte[] mRegionBuffer;
+    private byte[] mCodecBuffer;
+    private SharedFrameBuffer mSharedFrameBuffer;
+    private CommandBatch mCurrentBatch;
+    private Animation mAnimation;
+    private volatile int mSuppressedFrameCount;
+    private int mTransferId;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            Frame frame;
+            synchronized (mQueue) {
+                frame = mQueue.pollFirst();
+                mDrainScheduled = false;
+            }
+            if (frame != null) {
+                mCurrentBatch = frame.mBatch;
+                sendFrame(frame);
+                mCurrentBatch = null;
+                frame.release();
+            }
+            synchronized (mQueue) {
+                // The interval to the next frame is counted from when this one has been handed over
+                mLastFrameTime = SystemClock.uptimeMillis();
+                if (!mQueue.isEmpty()) {
+                    scheduleDrainLocked();
+                }
+            }
+        }
+    };
+
+    private final Runnable mAnimationTick = new Runnable() {
+        @Override
+        public void run() {
+            tickAnimation();
+        }
+    };
+
+    private final Runnable mStopAnimation = new Runnable() {
+        @Override
+        public void run() {
+            mAnimation = null;
+            mHandler.removeCallbacks(mAnimationTick);
+        }
+    };
+
+    private final Runnable mReset = new Runnable() {
+        @Override
+        public void run() {
+            mFrameDelta.reset();
+        }
+    };
+
+    private final Runnable mRelease = new Runnable() {
+        @Override
+        public void run() {
+            mFrameDelta.reset();
+            if (mSharedFrameBuffer != null) {
+                mSharedFrameBuffer.close();
+                mSharedFrameBuffer = null;
+            }
+        }
+    };
+
+    /**
+     * Create the display path of a control.
+     *
+     * @param control the control.
+     * @param handler handler of the encode thread.
+     */
+    FrameSender(final Control control, final Handler handler) {
+        mControl = control;
+        mHandler = handler;
+    }
+
+    int getSuppressedFrameCount() {
+        return mSuppressedFrameCount;
+    }
+
+    /**
+     * Queue a bitmap to be sent. Called on the control thread, the bitmap is copied before returning.
+     *
+     * @param bitmap the bitmap, or null to send an empty image.
+     */
+    void showBitmap(final Bitmap bitmap) {
+        if (bitmap == null) {
+            clearQueue();
+            post(SWR30.EXTRA_DISPLAY_DATA_RAW, null);
+            return;
+        }
+        final Bitmap copy = Control.obtainBitmap(bitmap.getWidth(), bitmap.getHeight());
+        draw(bitmap, copy);
+        enqueue(new Frame(copy, null, copy.getWidth(), copy.getHeight()));
+    }
+
+    /**
+     * Queue a region of the display to be sent. Called on the control thread, the bitmap is copied before returning.
+     *
+     * @param rect the region.
+     * @param bitmap the content of the region.
+     */
+    void showRegion(final Rect rect, final Bitmap bitmap) {
+        final Bitmap copy = Control.obtainBitmap(Math.min(rect.width(), bitmap.getWidth()), Math.min(rect.height(), bitmap.getHeight()));
+        draw(bitmap, copy);
+        enqueue(new Frame(copy, rect.left, rect.top));
+    }
+
+    /**
+     * Queue a drawable resource to be sent, see {@link Control#setResourceCacheSize(int)}. Called on the control thread.
+     *
+     * @param resourceId the resource ID.
+     */
+    void showResource(final int resourceId) {
+        enqueue(new Frame(resourceId));
+    }
+
+    /**
+     * Queue a packed frame to be sent. Called on the control thread, the frame is copied before returning.
+     *
+     * @param monoFrame the frame.
+     */
+    void showFrame(final MonoFrame monoFrame) {
+        final byte[] copy = new byte[monoFrame.getStride() * monoFrame.getHeight()];
+        monoFrame.copyTo(copy);
+        enqueue(new Frame(null, copy, monoFrame.getWidth(), monoFrame.getHeight()));
+    }
+
+    /**
+     * Start an animation of bitmaps. Called on the control thread, the bitmaps are copied before returning.
+     *
+     * @param bitmaps the frames, all of the same size.
+     * @param frameDurationMillis time each frame is shown.
+     * @param loop true to repeat the animation until stopped.
+     */
+    void startAnimation(final Bitmap[] bitmaps, final long frameDurationMillis, final boolean loop) {
+        final Animation animation = new Animation(bitmaps.length, bitmaps[0].getWidth(), bitmaps[0].getHeight(), frameDurationMillis, loop);
+        for (int i = 0; i < bitmaps.length; i++) {
+            animation.mBitmaps[i] = Control.obtainBitmap(animation.mWidth, animation.mHeight);
+            draw(bitmaps[i], animation.mBitmaps[i]);
+        }
+        startAnimation(animation);
+    }
+
+    /**
+     * Start an animation of packed frames. Called on the control thread, the frames are copied before returning.
+     *
+     * @param frames the frames, all of the same size.
+     * @param frameDurationMillis time each frame is shown.
+     * @param loop true to repeat the animation until stopped.
+     */
+    void startAnimation(final MonoFrame[] frames, final long frameDurationMillis, final boolean loop) {
+        final Animation animation = new Animation(frames.length, frames[0].getWidth(), frames[0].getHeight(), frameDurationMillis, loop);
+        for (int i = 0; i < frames.length; i++) {
+            animation.mFrames[i] = new byte[frames[i].getStride() * frames[i].getHeight()];
+            frames[i].copyTo(animation.mFrames[i]);
+        }
+        startAnimation(animation);
+    }
+
+    private void startAnimation(final Animation animation) {
+        clearQueue();
+        mAnimationStarted = true;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mStopAnimation.run();
+                prepareAnimation(animation);
+                mAnimation = animation;
+                animation.mStartTime = SystemClock.uptimeMillis();
+                tickAnimation();
+            }
+        });
+    }
+
+    /**
+     * Stop the animation, if any. Called on the control thread. The frame shown last stays on the display.
+     */
+    void stopAnimation() {
+        if (mAnimationStarted) {
+            mAnimationStarted = false;
+            mHandler.post(mStopAnimation);
+        }
+    }
+
+    private void enqueue(final Frame frame) {
+        // Anything shown replaces the animation
+        stopAnimation();
+        frame.mBatch = mControl.mBatch;
+        if (frame.mBatch != null) {
+            frame.mBatch.addPending();
+        }
+        synchronized (mQueue) {
+            // A region depends on the frames before it, so only a full frame may replace queued frames
+            if (mControl.mFrameConflationEnabled && !frame.mIsRegion) {
+                while (!mQueue.isEmpty()) {
+                    // Latest wins, a replaced frame is never sent
+                    mQueue.pollLast().release();
+                }
+            }
+            mQueue.addLast(frame);
+            if (!mDrainScheduled) {
+                scheduleDrainLocked();
+            }
+        }
+    }
+
+    /**
+     * Send an image URI. Called on the control thread. Frames that are still queued are dropped, since they would be replaced immediately.
+     *
+     * @param uri the URI.
+     */
+    void showUri(final String uri) {
+        clearQueue();
+        post(SWR30.EXTRA_DISPLAY_DATA_URI, uri);
+    }
+
+    private void post(final String key, final String value) {
+        final CommandBatch batch = mControl.mBatch;
+        if (batch != null) {
+            batch.addPending();
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mCurrentBatch = batch;
+                sendUpdate(key, value);
+                mCurrentBatch = null;
+                if (batch != null) {
+                    batch.finishPending();
+                }
+            }
+        });
+    }
+
+    /**
+     * Send a message to the host application, or add it to the batch of the display update being sent. Called on the encode thread.
+     *
+     * @param what the message type.
+     * @param extras the message extras.
+     */
+    private void send(final int what, final Bundle extras) {
+        if (mCurrentBatch != null) {
+            mCurrentBatch.add(what, extras);
+        } else {
+            mControl.deliverMessageToHostapp(what, extras);
+        }
+    }
+
+    /**
+     * Send a display update that the host application decodes itself. Called on the encode thread.
+     *
+     * @param key The extra.
+     * @param value The URI, or null to send an empty image.
+     */
+    private void sendUpdate(final String key, final String value) {
+        mFrameDelta.reset();
+        Bundle extras = mControl.createExtrasWithInstanceId();
+        if (value != null) {
+            extras.putString(key, value);
+        } else {
+            extras.putByteArray(key, null);
+        }
+        send(SWR30.MSG_DISPLAY_UPDATE, extras);
+    }
+
+    /**
+     * Drop queued frames and forget the last frame sent, for example when the control is started or stopped.
+     */
+    void reset() {
+        clearQueue();
+        mHandler.post(mReset);
+    }
+
+    /**
+     * Drop queued frames, forget the last frame sent and close the shared memory region, when the control is stopped.
+     */
+    void release() {
+        clearQueue();
+        mHandler.post(mRelease);
+    }
+
+    private void clearQueue() {
+        stopAnimation();
+        synchronized (mQueue) {
+            while (!mQueue.isEmpty()) {
+                mQueue.pollFirst().release();
+            }
+            if (mDrainScheduled) {
+                mHandler.removeCallbacks(mDrain);
+                mDrainScheduled = false;
+            }
+        }
+    }
+
+    private void scheduleDrainLocked() {
+        mDrainScheduled = true;
+        // Frames are only paced together with conflation, and regions are small and not conflated, so they are not paced either
+        final long time = mQueue.peekFirst().mIsRegion || !mControl.mFrameConflationEnabled ? 0 : mLastFrameTime + mControl.mMinFrameIntervalMillis;
+        mHandler.postAtTime(mDrain, Math.max(SystemClock.uptimeMillis(), time));
+    }
+
+    /**
+     * Copy a bitmap to a pooled bitmap, so that the frame can be encoded later while the caller keeps drawing to its own bitmap.
+     *
+     * @param bitmap The bitmap.
+     * @param copy The bitmap to copy to, pixels outside the bitmap are cropped.
+     */
+    private void draw(final Bitmap bitmap, final Bitmap copy) {
+        if (mSnapshotCanvas == null) {
+            mSnapshotCanvas = new Canvas();
+        }
+        mSnapshotCanvas.setBitmap(copy);
+        // Copy pixel for pixel, whatever the density of the source
+        mSnapshotCanvas.setDensity(Bitmap.DENSITY_NONE);
+        mSnapshotCanvas.drawBitmap(bitmap, 0, 0, null);
+        mSnapshotCanvas.setBitmap(null);
+    }
+
+    /**
+     * Convert a frame if needed and send it to the host application. Called on the encode thread.
+     *
+     * @param queued The frame.
+     */
+    private void sendFrame(final Frame queued) {
+        if (queued.mIsRegion) {
+            sendRegion(queued);
+            return;
+        }
+        final int width;
+        final int height;
+        final byte[] frame;
+        if (queued.mResourceId != 0) {
+            final ResourceFrameCache.Entry entry = getResourceFrame(queued.mResourceId);
+            if (entry == null) {
+                // Let the host application try
+                sendUpdate(SWR30.EXTRA_DISPLAY_DATA_URI, mControl.getResourceUri(queued.mResourceId).toString());
+                return;
+            }
+            width = entry.mWidth;
+            height = entry.mHeight;
+            frame = entry.mFrame;
+        } else {
+            width = queued.mWidth;
+            height = queued.mHeight;
+            if (queued.mBitmap != null) {
+                mEncoder.setDitherMode(mControl.mDitherMode);
+                frame = getFrameBuffer(width, height);
+                mEncoder.encode(queued.mBitmap, frame);
+            } else {
+                frame = queued.mPacked;
+            }
+        }
+        final int hash = FrameDelta.hash(frame);
+        if (mFrameDelta.isPrevious(frame, width, height, hash)) {
+            mSuppressedFrameCount++;
+            return;
+        }
+        if (mControl.mFrameFormat == Control.FrameFormat.FRAME_FORMAT_PNG) {
+            Bundle extras = mControl.createExtrasWithInstanceId();
+            final byte[] png = mEncoder.encodePng(frame, width, height);
+            putData(extras, SWR30.EXTRA_DISPLAY_DATA_RAW, png, png.length);
+            send(SWR30.MSG_DISPLAY_UPDATE, extras);
+        } else if (mControl.mDeltaUpdatesEnabled && mFrameDelta.compute(frame, width, height)) {
+            if (mFrameDelta.getRectCount() > 0) {
+                Bundle extras = mControl.createExtrasWithInstanceId();
+                extras.putIntArray(SWR30.EXTRA_DISPLAY_DELTA_RECTS, mFrameDelta.getRects());
+                putMonochrome(extras, mFrameDelta.getData(frame));
+                send(SWR30.MSG_DISPLAY_UPDATE_DELTA, extras);
+            }
+        } else {
+            Bundle extras = mControl.createExtrasWithInstanceId();
+            putMonochrome(extras, frame);
+            extras.putInt(SWR30.EXTRA_IMAGE_WIDTH, width);
+            send(SWR30.MSG_DISPLAY_UPDATE, extras);
+        }
+        setPrevious(frame, width, height, hash);
+    }
+
+    /**
+     * Returns the buffer to encode the next frame into. It is never the last frame sent, which is compared with the next frame.
+     *
+     * @param width width in pixels.
+     * @param height height in pixels.
+     * @return the buffer, of exactly the size of the frame.
+     */
+    private byte[] getFrameBuffer(final int width, final int height) {
+        final int size = MonochromeEncoder.getFrameSize(width, height);
+        if (mFrameBuffer == null || mFrameBuffer.length != size) {
+            mFrameBuffer = new byte[size];
+            mSpareFrameBuffer = new byte[size];
+        }
+        return mFrameBuffer;
+    }
+
+    /**
+     * Remember a frame as the last frame sent, see {@link FrameDelta#setPrevious(byte[], int, int, int)}. If the frame is in the frame buffer,
+     * the next frame is encoded into the other buffer.
+     */
+    private void setPrevious(final byte[] frame, final int width, final int height, final int hash) {
+        mFrameDelta.setPrevious(frame, width, height, hash);
+        if (frame == mFrameBuffer) {
+            mFrameBuffer = mSpareFrameBuffer;
+            mSpareFrameBuffer = frame;
+        }
+    }
+
+    /**
+     * Convert and encode all frames of an animation, so that playing it only costs sending the frames. Called on the encode thread.
+     *
+     * @param animation The animation.
+     */
+    private void prepareAnimation(final Animation animation) {
+        mEncoder.setDitherMode(mControl.mDitherMode);
+        animation.mIsPng = mControl.mFrameFormat == Control.FrameFormat.FRAME_FORMAT_PNG;
+        final boolean compress = mControl.mFrameCodec == Control.FrameCodec.FRAME_CODEC_RLE;
+        for (int i = 0; i < animation.mFrames.length; i++) {
+            if (animation.mBitmaps[i] != null) {
+                animation.mFrames[i] = mEncoder.encode(animation.mBitmaps[i]);
+                Control.sBitmapPool.release(animation.mBitmaps[i]);
+                animation.mBitmaps[i] = null;
+            }
+            final byte[] frame = animation.mFrames[i];
+            animation.mHashes[i] = FrameDelta.hash(frame);
+            if (animation.mIsPng) {
+                animation.mPayloads[i] = mEncoder.encodePng(frame, animation.mWidth, animation.mHeight);
+            } else if (compress) {
+                final byte[] encoded = RleCodec.encode(frame);
+                animation.mCompressed[i] = encoded.length < frame.length;
+                animation.mPayloads[i] = animation.mCompressed[i] ? encoded : frame;
+            } else {
+                animation.mPayloads[i] = frame;
+            }
+        }
+    }
+
+    /**
+     * Send the frame of the animation that is due now, and schedule the next frame. Frames that are already late are dropped. Called on the encode thread.
+     */
+    private void tickAnimation() {
+        final Animation animation = mAnimation;
+        if (animation == null) {
+            return;
+        }
+        final int count = animation.mFrames.length;
+        final long elapsedFrames = (SystemClock.uptimeMillis() - animation.mStartTime) / animation.mFrameDurationMillis;
+        final boolean last = !animation.mLoop && elapsedFrames >= count - 1;
+        final int index = last ? count - 1 : (int) (elapsedFrames % count);
+        final byte[] frame = animation.mFrames[index];
+        final int hash = animation.mHashes[index];
+        if (!mFrameDelta.isPrevious(frame, animation.mWidth, animation.mHeight, hash)) {
+            final byte[] payload = animation.mPayloads[index];
+            Bundle extras = mControl.createExtrasWithInstanceId();
+            if (animation.mIsPng) {
+                putData(extras, SWR30.EXTRA_DISPLAY_DATA_RAW, payload, payload.length);
+            } else {
+                putData(extras, SWR30.EXTRA_DISPLAY_DATA_MONOCHROME, payload, payload.length);
+                if (animation.mCompressed[index]) {
+                    extras.putInt(SWR30.EXTRA_DISPLAY_DATA_CODEC, SWR30.FrameCodec.FRAME_CODEC_RLE);
+                }
+                extras.putInt(SWR30.EXTRA_IMAGE_WIDTH, animation.mWidth);
+            }
+            send(SWR30.MSG_DISPLAY_UPDATE, extras);
+            setPrevious(frame, animation.mWidth, animation.mHeight, hash);
+        }
+        if (last) {
+            mAnimation = null;
+        } else {
+            mHandler.postAtTime(mAnimationTick, animation.mStartTime + (elapsedFrames + 1) * animation.mFrameDurationMillis);
+        }
+    }
+
+    /**
+     * Get a drawable resource as a packed frame, from the cache or decoded and added to the cache. Called on the encode thread.
+     *
+     * @param resourceId The resource ID.
+     * @return the frame, or null if the resource does not have the size of the display or could not be decoded.
+     */
+    private ResourceFrameCache.Entry getResourceFrame(final int resourceId) {
+        final int ditherMode = mControl.mDitherMode;
+        final long key = ResourceFrameCache.getKey(resourceId, ditherMode);
+        ResourceFrameCache.Entry entry = Control.sResourceFrameCache.get(key);
+        if (entry == null) {
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            // Pixel for pixel, as for a resource in res/drawable-nodpi
+            options.inScaled = false;
+            // Only frames of the size of the display are sent as they are, the host application scales other images
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(mControl.mContext.getResources(), resourceId, options);
+            if (!(options.outWidth == SWR30.DisplaySize.DISPLAY_SIZE_SHORTEST && options.outHeight == SWR30.DisplaySize.DISPLAY_SIZE_LONGEST)
+                    && !(options.outWidth == SWR30.DisplaySize.DISPLAY_SIZE_LONGEST && options.outHeight == SWR30.DisplaySize.DISPLAY_SIZE_SHORTEST)) {
+                return null;
+            }
+            options.inJustDecodeBounds = false;
+            final Bitmap bitmap = BitmapFactory.decodeResource(mControl.mContext.getResources(), resourceId, options);
+            if (bitmap == null) {
+                Dbg.e("Could not decode resource " + resourceId);
+                return null;
+            }
+            mEncoder.setDitherMode(ditherMode);
+            entry = new ResourceFrameCache.Entry(mEncoder.encode(bitmap), bitmap.getWidth(), bitmap.getHeight());
+            bitmap.recycle();
+            Control.sResourceFrameCache.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Compose a region into the last frame and send it to the host application. Called on the encode thread.
+     *
+     * @param queued The region.
+     */
+    private void sendRegion(final Frame queued) {
+        final int width = mFrameDelta.getWidth();
+        final int height = mFrameDelta.getHeight();
+        if (width == 0) {
+            Dbg.e("No image shown to update a region of");
+            return;
+        }
+        mEncoder.setDitherMode(mControl.mDitherMode);
+        final int regionSize = MonochromeEncoder.getFrameSize(queued.mWidth, queued.mHeight);
+        if (mRegionBuffer == null || mRegionBuffer.length < regionSize) {
+            mRegionBuffer = new byte[regionSize];
+        }
+        mEncoder.encode(queued.mBitmap, mRegionBuffer);
+        final byte[] frame = mFrameDelta.compose(mRegionBuffer, queued.mX, queued.mY, queued.mWidth, queued.mHeight, getFrameBuffer(width, height));
+        if (frame == null) {
+            Dbg.e("No image shown to update a region of");
+            return;
+        }
+        final int hash = FrameDelta.hash(frame);
+        if (mFrameDelta.isPrevious(frame, width, height, hash)) {
+            mSuppressedFrameCount++;
+            return;
+        }
+        Bundle extras = mControl.createExtrasWithInstanceId();
+        if (mControl.mFrameFormat == Control.FrameFormat.FRAME_FORMAT_PNG) {
+            // The host can only show whole images
+            final byte[] png = mEncoder.encodePng(frame, width, height);
+            putData(extras, SWR30.EXTRA_DISPLAY_DATA_RAW, png, png.length);
+            send(SWR30.MSG_DISPLAY_UPDATE, extras);
+        } else {
+            extras.putIntArray(SWR30.EXTRA_DISPLAY_REGION, mFrameDelta.getRects());
+            putMonochrome(extras, mFrameDelta.getData(frame));
+            send(SWR30.MSG_DISPLAY_UPDATE_REGION, extras);
+        }
+        setPrevious(frame, width, height, hash);
+    }
+
+    /**
+     * Put packed monochrome data into message extras, encoded with the codec selected by the control if that makes it smaller.
+     *
+     * @param extras The extras.
+     * @param data The packed data.
+     */
+    private void putMonochrome(final Bundle extras, final byte[] data) {
+        if (mControl.mFrameCodec == Control.FrameCodec.FRAME_CODEC_RLE) {
+            final int maxSize = RleCodec.getMaxEncodedSize(data.length);
+            if (mCodecBuffer == null || mCodecBuffer.length < maxSize) {
+                mCodecBuffer = new byte[maxSize];
+            }
+            final int length = RleCodec.encode(data, 0, data.length, mCodecBuffer);
+            if (length < data.length) {
+                putData(extras, SWR30.EXTRA_DISPLAY_DATA_MONOCHROME, mCodecBuffer, length);
+                extras.putInt(SWR30.EXTRA_DISPLAY_DATA_CODEC, SWR30.FrameCodec.FRAME_CODEC_RLE);
+                return;
+            }
+        }
+        putData(extras, SWR30.EXTRA_DISPLAY_DATA_MONOCHROME, data, data.length);
+    }
+
+    /**
+     * Put frame data into message extras, or into the shared memory region if enabled by the control.
+     *
+     * @param extras The extras.
+     * @param key The extra used when the data is not in shared memory.
+     * @param data The data, which may be a reused buffer, and is then copied unless sent right away.
+     * @param length Number of bytes, starting at the beginning of data.
+     */
+    private void putData(final Bundle extras, final String key, final byte[] data, final int length) {
+        // Checked here, since SharedFrameBuffer refers to classes that only exist from Android 8.1
+        if (mControl.mSharedMemoryEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            if (mSharedFrameBuffer == null) {
+                mSharedFrameBuffer = SharedFrameBuffer.create(mControl.mControlInstanceId);
+                if (mSharedFrameBuffer != null) {
+                    Bundle sharedExtras = mControl.createExtrasWithInstanceId();
+                    sharedExtras.putParcelable(SWR30.EXTRA_DISPLAY_SHARED_MEMORY, mSharedFrameBuffer.getSharedMemory());
+                    send(SWR30.MSG_DISPLAY_SHARED_MEMORY, sharedExtras);
+                }
+            }
+            if (mSharedFrameBuffer != null && mSharedFrameBuffer.put(extras, data, length)) {
+                return;
+            }
+        }
+        final int chunkSize = mControl.mChunkSize;
+        if (chunkSize > 0 && length > chunkSize) {
+            sendChunks(extras, data, length, chunkSize);
+            return;
+        }
+        // A message is written to a parcel when it is sent, but a batch keeps the extras until the batch is sent
+        final boolean reused = data == mFrameBuffer || data == mSpareFrameBuffer || data == mCodecBuffer;
+        extras.putByteArray(key, length == data.length && !(reused && mCurrentBatch != null) ? data : Arrays.copyOf(data, length));
+    }
+
+    /**
+     * Send frame data as a chunked transfer and put the transfer id into message extras. The parts are sent right away, also when the
+     * display update is added to a batch, so that the batch stays within the chunk size too. They reach the host application before the update.
+     *
+     * @param extras The extras.
+     * @param data The data, which may be a reused buffer.
+     * @param length Number of bytes, starting at the beginning of data.
+     * @param chunkSize Maximum number of bytes per part.
+     */
+    private void sendChunks(final Bundle extras, final byte[] data, final int length, final int chunkSize) {
+        mTransferId = mTransferId == Integer.MAX_VALUE ? 1 : mTransferId + 1;
+        final int count = (length + chunkSize - 1) / chunkSize;
+        for (int i = 0; i < count; i++) {
+            final int offset = i * chunkSize;
+            Bundle chunkExtras = mControl.createExtrasWithInstanceId();
+            chunkExtras.putInt(SWR30.EXTRA_DISPLAY_DATA_TRANSFER_ID, mTransferId);
+            chunkExtras.putInt(SWR30.EXTRA_DISPLAY_DATA_CHUNK_INDEX, i);
+            chunkExtras.putInt(SWR30.EXTRA_DISPLAY_DATA_CHUNK_COUNT, count);
+            chunkExtras.putByteArray(SWR30.EXTRA_DISPLAY_DATA_CHUNK, Arrays.copyOfRange(data, offset, Math.min(offset + chunkSize, length)));
+            mControl.deliverMessageToHostapp(SWR30.MSG_DISPLAY_DATA_CHUNK, chunkExtras);
+        }
+        extras.putInt(SWR30.EXTRA_DISPLAY_DATA_TRANSFER_ID, mTransferId);
+    }
+
+    /**
+     * A queued frame, either a bitmap to be converted, a packed frame, a drawable resource, or a bitmap to be drawn into a region of the last frame.
+     */
+    private static final class Frame {
+        final Bitmap mBitmap;
+        final byte[] mPacked;
+        final int mResourceId;
+        final int mWidth;
+        final int mHeight;
+        final boolean mIsRegion;
+        final int mX;
+        final int mY;
+        CommandBatch mBatch;
+
+        Frame(final Bitmap bitmap, final byte[] packed, final int width, final int height) {
+            mBitmap = bitmap;
+            mPacked = packed;
+            mResourceId = 0;
+            mWidth = width;
+            mHeight = height;
+            mIsRegion = false;
+            mX = 0;
+            mY = 0;
+        }
+
+        Frame(final Bitmap bitmap, final int x, final int y) {
+            mBitmap = bitmap;
+            mPacked = null;
+            mResourceId = 0;
+            mWidth = bitmap.getWidth();
+            mHeight = bitmap.getHeight();
+            mIsRegion = true;
+            mX = x;
+            mY = y;
+        }
+
+        Frame(final int resourceId) {
+            mBitmap = null;
+            mPacked = null;
+            mResourceId = resourceId;
+            mWidth = 0;
+            mHeight = 0;
+            mIsRegion = false;
+            mX = 0;
+            mY = 0;
+        }
+
+        void release() {
+            if (mBitmap != null) {
+                Control.sBitmapPool.release(mBitmap);
+            }
+            if (mBatch != null) {
+                mBatch.finishPending();
+            }
+        }
+    }
+
+    /**
+     * The frames of an animation. Bitmaps are converted to packed frames and encoded on the encode thread before the animation starts.
+     */
+    private static final class Animation {
+        final Bitmap[] mBitmaps;
+        final byte[][] mFrames;
+        final int[] mHashes;
+        final byte[][] mPayloads;
+        final boolean[] mCompressed;
+        final int mWidth;
+        final int mHeight;
+        final long mFrameDurationMillis;
+        final boolean mLoop;
+        boolean mIsPng;
+        long mStartTime;
+
+        Animation(final int count, final int width, final int height, final long frameDurationMillis, final boolean loop) {
+            mBitmaps = new Bitmap[count];
+            mFrames = new byte[count][];
+            mHashes = new int[count];
+            mPayloads = new byte[count][];
+            mCompressed = new boolean[count];
+            mWidth = width;
+            mHeight = height;
+            mFrameDurationMillis = frameDurationMillis;
+            mLoop = loop;
+        }
+    }
+}
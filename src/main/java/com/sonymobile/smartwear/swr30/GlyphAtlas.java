@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.util.SparseArray;
+
+/**
+ * A font rasterized once to black and white glyphs, for drawing text directly into a {@link MonoFrame}.<br>
+ * Drawing text with a {@link android.widget.TextView} shapes and anti-aliases the text on every frame, and the grey pixels are then converted to black and white.
+ * A glyph atlas instead draws each glyph once, without anti-aliasing, and packs the glyphs into one strip of bits. Drawing a string is then one
+ * blit per character, and measuring a string is a sum of advances, neither of which allocates.<br>
+ * The atlas holds the characters U+0020 to U+007E and U+00A0 to U+00FF. Other characters are drawn as '?'. Glyphs are placed by their advance only,
+ * without kerning or ligatures, so text that needs shaping should still be rendered with a view, see {@link ViewRenderer}.<br>
+ * Example:
+ * <pre>
+ * GlyphAtlas font = GlyphAtlas.getInstance(Control.TextSize.TEXT_SIZE_MEDIUM);
+ * int x = (frame.getWidth() - font.measureText(title)) / 2;
+ * font.drawText(frame, title, x, font.getAscent());
+ * </pre>
+ * An atlas is not modified after it has been created, and can be used on any thread.
+ *
+ * @since 2
+ */
+public class GlyphAtlas {
+
+    private static final char FIRST_CHAR = 0x20;
+    private static final char LAST_CHAR = 0xFF;
+    private static final char FALLBACK_CHAR = '?';
+
+    private static final SparseArray<GlyphAtlas> sInstances = new SparseArray<GlyphAtlas>();
+
+    private final int mTextSize;
+    private final int mAscent;
+    private final int mDescent;
+
+    // Glyph of each character, indexed by character - FIRST_CHAR
+    private final int[] mAdvance = new int[LAST_CHAR - FIRST_CHAR + 1];
+    private final int[] mLeft = new int[LAST_CHAR - FIRST_CHAR + 1];
+    private final int[] mStripX = new int[LAST_CHAR - FIRST_CHAR + 1];
+    private final int[] mWidth = new int[LAST_CHAR - FIRST_CHAR + 1];
+
+    // Packed strip of all glyphs, the baseline is mStripTop pixels below the first row
+    private final byte[] mStrip;
+    private final int mStripStride;
+    private final int mStripTop;
+    private final int mStripHeight;
+
+    /**
+     * Returns the shared atlas of the default typeface for a text size, which is created on first use.
+     *
+     * @param textSize Text size in pixels, normally one of {@link Control.TextSize}.
+     * @return the atlas.
+     *
+     * @since 2
+     */
+    public static GlyphAtlas getInstance(final int textSize) {
+        synchronized (sInstances) {
+            GlyphAtlas atlas = sInstances.get(textSize);
+            if (atlas == null) {
+                atlas = new GlyphAtlas(textSize, Typeface.DEFAULT);
+                sInstances.put(textSize, atlas);
+            }
+            return atlas;
+        }
+    }
+
+    /**
+     * Create an atlas. This draws every glyph, and should be done once for each font, not for each frame.
+     *
+     * @param textSize Text size in pixels, normally one of {@link Control.TextSize}.
+     * @param typeface The typeface.
+     *
+     * @since 2
+     */
+    public GlyphAtlas(final int textSize, final Typeface typeface) {
+        if (textSize <= 0) {
+            throw new IllegalArgumentException("textSize <= 0");
+        }
+        mTextSize = textSize;
+        final Paint paint = new Paint();
+        paint.setAntiAlias(false);
+        paint.setColor(Color.BLACK);
+        paint.setTextSize(textSize);
+        paint.setTypeface(typeface);
+        final Paint.FontMetricsInt metrics = paint.getFontMetricsInt();
+        mAscent = -metrics.ascent;
+        mDescent = metrics.descent;
+
+        // Measure all glyphs and lay them out next to each other
+        final char[] chars = new char[1];
+        final Rect bounds = new Rect();
+        int stripWidth = 0;
+        int top = 0;
+        int bottom = 0;
+        for (int i = 0; i < mAdvance.length; i++) {
+            chars[0] = (char) (FIRST_CHAR + i);
+            if (!isDrawable(chars[0])) {
+                continue;
+            }
+            mAdvance[i] = Math.round(paint.measureText(chars, 0, 1));
+            paint.getTextBounds(chars, 0, 1, bounds);
+            if (bounds.right > bounds.left && bounds.bottom > bounds.top) {
+                mLeft[i] = bounds.left;
+                mWidth[i] = bounds.right - bounds.left;
+                mStripX[i] = stripWidth;
+                stripWidth += mWidth[i];
+                top = Math.min(top, bounds.top);
+                bottom = Math.max(bottom, bounds.bottom);
+            }
+        }
+        mStripTop = -top;
+        mStripHeight = Math.max(bottom - top, 1);
+        stripWidth = Math.max(stripWidth, 1);
+
+        // Draw the glyphs without anti-aliasing and pack them
+        final Bitmap bitmap = Bitmap.createBitmap(stripWidth, mStripHeight, Bitmap.Config.RGB_565);
+        bitmap.eraseColor(Color.WHITE);
+        final Canvas canvas = new Canvas(bitmap);
+        for (int i = 0; i < mAdvance.length; i++) {
+            if (mWidth[i] > 0) {
+                chars[0] = (char) (FIRST_CHAR + i);
+                canvas.drawText(chars, 0, 1, mStripX[i] - mLeft[i], mStripTop, paint);
+            }
+        }
+        mStrip = new MonochromeEncoder().encode(bitmap);
+        mStripStride = MonochromeEncoder.getStride(stripWidth);
+        bitmap.recycle();
+    }
+
+    /**
+     * @return text size in pixels.
+     *
+     * @since 2
+     */
+    public int getTextSize() {
+        return mTextSize;
+    }
+
+    /**
+     * @return distance in pixels from the top of a line to the baseline.
+     *
+     * @since 2
+     */
+    public int getAscent() {
+        return mAscent;
+    }
+
+    /**
+     * @return distance in pixels from the baseline to the bottom of a line.
+     *
+     * @since 2
+     */
+    public int getDescent() {
+        return mDescent;
+    }
+
+    /**
+     * @return recommended distance in pixels between the baselines of two lines.
+     *
+     * @since 2
+     */
+    public int getLineHeight() {
+        return mAscent + mDescent;
+    }
+
+    /**
+     * Measure the width of a text.
+     *
+     * @param text The text.
+     * @return the width in pixels, the sum of the advances of the characters.
+     *
+     * @since 2
+     */
+    public int measureText(final CharSequence text) {
+        return measureText(text, 0, text.length());
+    }
+
+    /**
+     * Measure the width of a part of a text.
+     *
+     * @param text The text.
+     * @param start index of the first character.
+     * @param end index after the last character.
+     * @return the width in pixels, the sum of the advances of the characters.
+     *
+     * @since 2
+     */
+    public int measureText(final CharSequence text, final int start, final int end) {
+        int width = 0;
+        for (int i = start; i < end; i++) {
+            width += mAdvance[getIndex(text.charAt(i))];
+        }
+        return width;
+    }
+
+    /**
+     * Draw a text in black. Pixels between the glyphs are not changed. For white text on black, draw the text on white and invert the area,
+     * see {@link MonoFrame#invertRect(int, int, int, int)}.
+     *
+     * @param frame The frame to draw into.
+     * @param text The text.
+     * @param x x coordinate of the start of the text.
+     * @param baseline y coordinate of the baseline, for example {@link #getAscent()} for the first line of the frame.
+     * @return the x coordinate after the text.
+     *
+     * @since 2
+     */
+    public int drawText(final MonoFrame frame, final CharSequence text, final int x, final int baseline) {
+        return drawText(frame, text, 0, text.length(), x, baseline);
+    }
+
+    /**
+     * Draw a part of a text in black, see {@link #drawText(MonoFrame, CharSequence, int, int)}.
+     *
+     * @param frame The frame to draw into.
+     * @param text The text.
+     * @param start index of the first character.
+     * @param end index after the last character.
+     * @param x x coordinate of the start of the text.
+     * @param baseline y coordinate of the baseline.
+     * @return the x coordinate after the text.
+     *
+     * @since 2
+     */
+    public int drawText(final MonoFrame frame, final CharSequence text, final int start, final int end, final int x, final int baseline) {
+        final int top = baseline - mStripTop;
+        int penX = x;
+        for (int i = start; i < end; i++) {
+            final int index = getIndex(text.charAt(i));
+            if (mWidth[index] > 0) {
+                frame.blit(mStrip, mStripStride, mStripX[index], 0, mWidth[index], mStripHeight, penX + mLeft[index], top,
+                        MonoFrame.BlitMode.BLIT_OR);
+            }
+            penX += mAdvance[index];
+        }
+        return penX;
+    }
+
+    private static boolean isDrawable(final char c) {
+        return c >= FIRST_CHAR && c <= LAST_CHAR && (c < 0x7F || c >= 0xA0);
+    }
+
+    private static int getIndex(final char c) {
+        return (isDrawable(c) ? c : FALLBACK_CHAR) - FIRST_CHAR;
+    }
+}
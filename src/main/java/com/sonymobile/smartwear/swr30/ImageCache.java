@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.Handler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+
+/**
+ * Disk cache of encoded start and preview images, see {@link Control#getImageVersionKey()}.<br>
+ * One file is kept per control instance and image type. Each entry records the version key of the control and the time the application
+ * was last updated, entries written by an older version of the application are never used.<br>
+ * Entries are also kept in memory, so that only the first read of an entry touches the disk. All entries are read into memory on the encode thread
+ * when the service starts, see {@link #start(android.content.Context, android.os.Handler)}, so that the control thread, which also handles taps, does not wait for the disk.
+ * Writes and removals update the entries in memory right away, and the files on the encode thread, or in the background if the service has not started.
+ */
+final class ImageCache {
+
+    static final int TYPE_START_IMAGE = 0;
+    static final int TYPE_PREVIEW_IMAGE = 1;
+
+    private static final String DIRECTORY = "swr30_images";
+    private static final int FILE_VERSION = 1;
+
+    private static long sPackageUpdateTime = -1;
+
+    // Handler of the encode thread, where files are read and written
+    private static volatile Handler sHandler;
+
+    // Entries by file name, null if there is no valid entry. Guarded by sEntries
+    private static final HashMap<String, Entry> sEntries = new HashMap<String, Entry>();
+    private static boolean sPreloaded;
+
+    /**
+     * A cached image.
+     */
+    static final class Entry {
+        final String mVersionKey;
+        final String mDataKey;
+        final int mWidth;
+        final byte[] mData;
+
+        Entry(final String versionKey, final String dataKey, final int width, final byte[] data) {
+            mVersionKey = versionKey;
+            mDataKey = dataKey;
+            mWidth = width;
+            mData = data;
+        }
+
+        /**
+         * Put the image into message extras, the same way as it was put when the entry was written.
+         *
+         * @param extras the message extras.
+         */
+        void putInto(final Bundle extras) {
+            extras.putByteArray(mDataKey, mData);
+            if (mWidth > 0) {
+                extras.putInt(SWR30.EXTRA_IMAGE_WIDTH, mWidth);
+            }
+        }
+    }
+
+    private ImageCache() {
+    }
+
+    /**
+     * Read a cached image.
+     *
+     * @param context The context.
+     * @param type {@link #TYPE_START_IMAGE} or {@link #TYPE_PREVIEW_IMAGE}.
+     * @param instanceId control instance ID.
+     * @return the entry, or null if no valid entry exists.
+     */
+    static Entry read(final Context context, final int type, final String instanceId) {
+        final File file = getFile(context, type, instanceId);
+        final String name = file.getName();
+        synchronized (sEntries) {
+            if (sEntries.containsKey(name) || sPreloaded) {
+                return sEntries.get(name);
+            }
+        }
+        final Entry entry = readFile(context, file);
+        synchronized (sEntries) {
+            if (!sEntries.containsKey(name)) {
+                sEntries.put(name, entry);
+            }
+            return sEntries.get(name);
+        }
+    }
+
+    /**
+     * Read and write files on the encode thread from now on, and read all cached images into memory there, so that
+     * {@link #read(android.content.Context, int, String)} does not touch the disk. Called when the service starts.
+     *
+     * @param context The context.
+     * @param handler the handler of the encode thread.
+     */
+    static void start(final Context context, final Handler handler) {
+        sHandler = handler;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                preload(context);
+            }
+        });
+    }
+
+    private static void preload(final Context context) {
+        final File[] files = new File(context.getCacheDir(), DIRECTORY).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp")) {
+                    continue;
+                }
+                final Entry entry = readFile(context, file);
+                synchronized (sEntries) {
+                    // Entries written or invalidated meanwhile are newer
+                    if (!sEntries.containsKey(file.getName())) {
+                        sEntries.put(file.getName(), entry);
+                    }
+                }
+            }
+        }
+        synchronized (sEntries) {
+            sPreloaded = true;
+        }
+    }
+
+    private static Entry readFile(final Context context, final File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FILE_VERSION || in.readLong() != getPackageUpdateTime(context)) {
+                return null;
+            }
+            String versionKey = in.readUTF();
+            String dataKey = in.readUTF();
+            int width = in.readInt();
+            int length = in.readInt();
+            byte[] data = null;
+            if (length >= 0) {
+                data = new byte[length];
+                in.readFully(data);
+            }
+            return new Entry(versionKey, dataKey, width, data);
+        } catch (IOException e) {
+            Dbg.e("Failed to read image cache " + file, e);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Write an image to the cache, replacing any existing entry. The file is written later, see {@link #execute(Runnable)}.
+     *
+     * @param context The context.
+     * @param type {@link #TYPE_START_IMAGE} or {@link #TYPE_PREVIEW_IMAGE}.
+     * @param instanceId control instance ID.
+     * @param versionKey version key of the control, see {@link Control#getImageVersionKey()}.
+     * @param dataKey the message extra carrying the image.
+     * @param width the width of a monochrome image, or 0.
+     * @param data the encoded image, or null if the control has no image.
+     */
+    static void write(final Context context, final int type, final String instanceId, final String versionKey,
+                      final String dataKey, final int width, final byte[] data) {
+        final File file = getFile(context, type, instanceId);
+        synchronized (sEntries) {
+            sEntries.put(file.getName(), new Entry(versionKey, dataKey, width, data));
+        }
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                writeFile(context, file, versionKey, dataKey, width, data);
+            }
+        });
+    }
+
+    private static void writeFile(final Context context, final File file, final String versionKey,
+                                  final String dataKey, final int width, final byte[] data) {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Dbg.e("Failed to create image cache directory " + directory);
+            return;
+        }
+        // Write to a temporary file, so a partly written entry is never read
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(FILE_VERSION);
+            out.writeLong(getPackageUpdateTime(context));
+            out.writeUTF(versionKey);
+            out.writeUTF(dataKey);
+            out.writeInt(width);
+            if (data != null) {
+                out.writeInt(data.length);
+                out.write(data);
+            } else {
+                out.writeInt(-1);
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(file)) {
+                Dbg.e("Failed to write image cache " + file);
+                tempFile.delete();
+            }
+        } catch (IOException e) {
+            Dbg.e("Failed to write image cache " + file, e);
+            tempFile.delete();
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * Remove the cached images of a control instance. The files are deleted later, see {@link #execute(Runnable)}.
+     *
+     * @param context The context.
+     * @param instanceId control instance ID.
+     */
+    static void invalidate(final Context context, final String instanceId) {
+        final File startFile = getFile(context, TYPE_START_IMAGE, instanceId);
+        final File previewFile = getFile(context, TYPE_PREVIEW_IMAGE, instanceId);
+        synchronized (sEntries) {
+            // Kept as no entry rather than removed, so that a preload in progress does not bring the entries back
+            sEntries.put(startFile.getName(), null);
+            sEntries.put(previewFile.getName(), null);
+        }
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                startFile.delete();
+                previewFile.delete();
+            }
+        });
+    }
+
+    /**
+     * Run file work on the encode thread, or in the background, in order, if the service has not started in this process,
+     * for example when a control activity invalidates the cache.
+     *
+     * @param task the file work.
+     */
+    private static void execute(final Runnable task) {
+        final Handler handler = sHandler;
+        if (handler != null) {
+            handler.post(task);
+        } else {
+            AsyncTask.SERIAL_EXECUTOR.execute(task);
+        }
+    }
+
+    private static File getFile(final Context context, final int type, final String instanceId) {
+        // The instance ID is assigned by the host application, hex encode it to get a safe file name
+        StringBuilder name = new StringBuilder();
+        try {
+            for (byte b : instanceId.getBytes("UTF-8")) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        name.append(type == TYPE_START_IMAGE ? ".start" : ".preview");
+        return new File(new File(context.getCacheDir(), DIRECTORY), name.toString());
+    }
+
+    private static synchronized long getPackageUpdateTime(final Context context) {
+        if (sPackageUpdateTime < 0) {
+            try {
+                sPackageUpdateTime = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                Dbg.e("Package not found", e);
+                sPackageUpdateTime = 0;
+            }
+        }
+        return sPackageUpdateTime;
+    }
+
+    private static void close(final Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Dbg.e("Failed to close image cache file", e);
+            }
+        }
+    }
+}
@@ -37,6 +37,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.RemoteException;
 import android.text.TextUtils;
 
 class IncomingHandler extends Handler {
@@ -45,9 +46,12 @@ class IncomingHandler extends Handler {
         void onConnectionStatus(int status, String bluetoothAddress);
     }
 
-    IncomingHandler(Context context, Looper looper) {
+    IncomingHandler(Context context, Looper looper, Looper encodeLooper) {
         super(looper);
         mContext = context.getApplicationContext();
+        mEncodeHandler = new Handler(encodeLooper);
+        mBackgroundQueue = new BackgroundQueue(mEncodeHandler);
+        ImageCache.start(mContext, mEncodeHandler);
     }
 
     void registerConnectionStatusListener(ConnectionStatusListener connectionStatusListener) {
@@ -59,6 +63,8 @@ class IncomingHandler extends Handler {
     }
 
     final Context mContext;
+    final Handler mEncodeHandler;
+    final BackgroundQueue mBackgroundQueue;
     ConnectionStatusListener mConnectionStatusListener;
 
     Control mStartedControl;
@@ -87,6 +93,9 @@ class IncomingHandler extends Handler {
             }
             return;
         }
+        if ((msg.what == SWR30.MSG_GET_START_IMAGE || msg.what == SWR30.MSG_GET_PREVIEW_IMAGE) && replyWithCachedImage(msg)) {
+            return;
+        }
         Control control = getControlInstanceByMessage(msg);
         if (control != null) {
             control.onMessage(msg.what, getBundle(msg));
@@ -98,6 +107,39 @@ class IncomingHandler extends Handler {
         }
     }
 
+    /**
+     * Reply to a start or preview image request from the image cache, without instantiating the control.
+     *
+     * @param msg the request.
+     * @return true if the request was answered.
+     */
+    boolean replyWithCachedImage(Message msg) {
+        if (!isValidControlMessage(msg)) {
+            return false;
+        }
+        String instanceId = getBundle(msg).getString(SWR30.EXTRA_CONTROL_INSTANCE_ID);
+        int type = msg.what == SWR30.MSG_GET_START_IMAGE ? ImageCache.TYPE_START_IMAGE : ImageCache.TYPE_PREVIEW_IMAGE;
+        ImageCache.Entry entry = ImageCache.read(mContext, type, instanceId);
+        if (entry == null) {
+            return false;
+        }
+        if (mStartedControl != null && mStartedControl.getControlInstanceId().equals(instanceId)
+                && !entry.mVersionKey.equals(mStartedControl.getImageVersionKey())) {
+            Dbg.d("cached image outdated for: " + instanceId);
+            return false;
+        }
+        Bundle extras = new Bundle();
+        extras.putString(SWR30.EXTRA_CONTROL_INSTANCE_ID, instanceId);
+        entry.putInto(extras);
+        int what = msg.what == SWR30.MSG_GET_START_IMAGE ? SWR30.MSG_UPDATE_START_IMAGE : SWR30.MSG_UPDATE_PREVIEW_IMAGE;
+        try {
+            msg.replyTo.send(Message.obtain(null, what, extras));
+        } catch (RemoteException e) {
+            Dbg.e("RemoteException: ", e);
+        }
+        return true;
+    }
+
     boolean isInstantiateAllowed(int what) {
         switch (what) {
             // fall through
@@ -163,7 +205,9 @@ class IncomingHandler extends Handler {
 
         if (isInstantiateAllowed(msg.what)) {
             String controlName = bundle.getString(SWR30.EXTRA_CONTROL_NAME);
-            return Control.instantiateControlFromClassName(mContext, controlName, instanceId, msg.replyTo);
+            Control control = Control.instantiateControlFromClassName(mContext, controlName, instanceId, msg.replyTo);
+            control.setHandlers(this, mEncodeHandler, mBackgroundQueue);
+            return control;
         } else {
             // existing instance expected for other messages
             Dbg.e("invalid instanceId received: " + instanceId);
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+/**
+ * The taps and key events received since the last call to {@link Control#onInputBatch(InputBatch)}, oldest first.<br>
+ * Events are recorded into preallocated arrays of timestamps and codes, so a burst of taps or key repeats does not allocate. If more than
+ * {@link #CAPACITY} events arrive before the batch is delivered, the oldest events are dropped.<br>
+ * The batch is reused, and is only valid during the call to {@link Control#onInputBatch(InputBatch)}.
+ * Example:
+ * <pre>
+ * public void onInputBatch(InputBatch batch) {
+ *     for (int i = 0; i &lt; batch.size(); i++) {
+ *         if (batch.getType(i) == InputBatch.EventType.EVENT_KEY &amp;&amp; batch.getKeyEvent(i) == KeyEvent.KEY_VOLUME_UP) {
+ *             mValue++;
+ *         }
+ *     }
+ *     redraw();
+ * }
+ * </pre>
+ *
+ * @since 2
+ */
+public final class InputBatch {
+
+    /**
+     * Maximum number of events in a batch.
+     *
+     * @since 2
+     */
+    public static final int CAPACITY = 64;
+
+    /**
+     * Event type constants. See {@link #getType(int)}.
+     *
+     * @since 2
+     */
+    public interface EventType {
+        /**
+         * A tap, see {@link Control#onTap(long)}.
+         *
+         * @since 2
+         */
+        int EVENT_TAP = 0;
+
+        /**
+         * A key event, see {@link Control#onKey(int, long)}.
+         *
+         * @since 2
+         */
+        int EVENT_KEY = 1;
+    }
+
+    private final long[] mTimestamps = new long[CAPACITY];
+    private final int[] mTypes = new int[CAPACITY];
+    private final int[] mKeyEvents = new int[CAPACITY];
+    private int mStart;
+    private int mSize;
+
+    InputBatch() {
+    }
+
+    /**
+     * @return The number of events in the batch.
+     *
+     * @since 2
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @param index Index of the event, from 0 for the oldest event.
+     * @return Any value defined in {@link InputBatch.EventType}.
+     *
+     * @since 2
+     */
+    public int getType(final int index) {
+        return mTypes[slot(index)];
+    }
+
+    /**
+     * @param index Index of the event, from 0 for the oldest event.
+     * @return For a key event, any key event defined in {@link Control.KeyEvent}. For a tap, 0.
+     *
+     * @since 2
+     */
+    public int getKeyEvent(final int index) {
+        return mKeyEvents[slot(index)];
+    }
+
+    /**
+     * @param index Index of the event, from 0 for the oldest event.
+     * @return The time when the event occurred.
+     *
+     * @since 2
+     */
+    public long getTimestamp(final int index) {
+        return mTimestamps[slot(index)];
+    }
+
+    /**
+     * Record an event, dropping the oldest event if the batch is full.
+     */
+    void add(final int type, final int keyEvent, final long timestamp) {
+        final int slot;
+        if (mSize == CAPACITY) {
+            slot = mStart;
+            mStart = (mStart + 1) % CAPACITY;
+        } else {
+            slot = (mStart + mSize) % CAPACITY;
+            mSize++;
+        }
+        mTypes[slot] = type;
+        mKeyEvents[slot] = keyEvent;
+        mTimestamps[slot] = timestamp;
+    }
+
+    void clear() {
+        mStart = 0;
+        mSize = 0;
+    }
+
+    private int slot(final int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + mSize);
+        }
+        return (mStart + index) % CAPACITY;
+    }
+}
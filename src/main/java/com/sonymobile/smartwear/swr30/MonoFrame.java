@@ -0,0 +1,589 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A black and white frame, stored as packed bits in a direct {@link java.nio.ByteBuffer} in the format of {@link SWR30#EXTRA_DISPLAY_DATA_MONOCHROME}.<br>
+ * Controls that update the display often can draw directly into the frame and show it with {@link Control#showImage(MonoFrame)},
+ * which skips the bitmap, the canvas and the conversion to black and white. None of the drawing methods allocate, so the same frame can be
+ * drawn and shown again and again. All coordinates are clipped to the frame, and rectangles exclude their right and bottom edge, as in
+ * {@link android.graphics.Rect}.<br>
+ * Example:
+ * <pre>
+ * mFrame = new MonoFrame(false);
+ * ...
+ * mFrame.clear();
+ * mFrame.fillRect(0, 0, progress, 16, true);
+ * showImage(mFrame);
+ * </pre>
+ * A frame is not thread safe, and should be used on the thread of the control.
+ *
+ * @since 2
+ */
+public class MonoFrame {
+
+    private static final int OP_CLEAR = 0;
+    private static final int OP_SET = 1;
+    private static final int OP_INVERT = 2;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mStride;
+    private final ByteBuffer mBuffer;
+
+    /**
+     * Create a white frame with the size of the accessory display.
+     *
+     * @param isPortrait True for a portrait frame, false for landscape, see {@link Control#createBitmap(boolean)}.
+     *
+     * @since 2
+     */
+    public MonoFrame(final boolean isPortrait) {
+        this(isPortrait ? Control.DisplaySize.DISPLAY_SIZE_SHORTEST : Control.DisplaySize.DISPLAY_SIZE_LONGEST,
+                isPortrait ? Control.DisplaySize.DISPLAY_SIZE_LONGEST : Control.DisplaySize.DISPLAY_SIZE_SHORTEST);
+    }
+
+    /**
+     * Create a white frame of any size, for example for images to draw with {@link #blit(MonoFrame, int, int, int, int, int, int, int)}.
+     * Only frames with the size of the accessory display can be shown.
+     *
+     * @param width width in pixels.
+     * @param height height in pixels.
+     *
+     * @since 2
+     */
+    public MonoFrame(final int width, final int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+        }
+        mWidth = width;
+        mHeight = height;
+        mStride = MonochromeEncoder.getStride(width);
+        mBuffer = ByteBuffer.allocateDirect(mStride * height);
+    }
+
+    /**
+     * @return width in pixels.
+     *
+     * @since 2
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return height in pixels.
+     *
+     * @since 2
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return number of bytes of each row.
+     *
+     * @since 2
+     */
+    public int getStride() {
+        return mStride;
+    }
+
+    /**
+     * Returns the buffer of the frame, for drawing that is not covered by the other methods. Each row is {@link #getStride()} bytes,
+     * most significant bit first, where a set bit is a black pixel. Bits beyond the width of a row must be left cleared.
+     * Use absolute get and put, the position of the buffer is used when the frame is shown.
+     *
+     * @return the buffer.
+     *
+     * @since 2
+     */
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * Make the whole frame white.
+     *
+     * @since 2
+     */
+    public void clear() {
+        fill(false);
+    }
+
+    /**
+     * Fill the whole frame.
+     *
+     * @param black true for black, false for white.
+     *
+     * @since 2
+     */
+    public void fill(final boolean black) {
+        fillRect(0, 0, mWidth, mHeight, black);
+    }
+
+    /**
+     * Invert the whole frame.
+     *
+     * @since 2
+     */
+    public void invert() {
+        invertRect(0, 0, mWidth, mHeight);
+    }
+
+    /**
+     * Get a pixel.
+     *
+     * @param x x coordinate.
+     * @param y y coordinate.
+     * @return true if the pixel is black, false if it is white or outside the frame.
+     *
+     * @since 2
+     */
+    public boolean getPixel(final int x, final int y) {
+        if (x < 0 || y < 0 || x >= mWidth || y >= mHeight) {
+            return false;
+        }
+        return (mBuffer.get(y * mStride + (x >> 3)) & (0x80 >>> (x & 7))) != 0;
+    }
+
+    /**
+     * Set a pixel.
+     *
+     * @param x x coordinate.
+     * @param y y coordinate.
+     * @param black true for black, false for white.
+     *
+     * @since 2
+     */
+    public void setPixel(final int x, final int y, final boolean black) {
+        if (x < 0 || y < 0 || x >= mWidth || y >= mHeight) {
+            return;
+        }
+        apply(y * mStride + (x >> 3), 0x80 >>> (x & 7), black ? OP_SET : OP_CLEAR);
+    }
+
+    /**
+     * Draw a line, including both end points.
+     *
+     * @param x0 x coordinate of the start point.
+     * @param y0 y coordinate of the start point.
+     * @param x1 x coordinate of the end point.
+     * @param y1 y coordinate of the end point.
+     * @param black true for black, false for white.
+     *
+     * @since 2
+     */
+    public void drawLine(final int x0, final int y0, final int x1, final int y1, final boolean black) {
+        if (y0 == y1) {
+            fillRect(Math.min(x0, x1), y0, Math.max(x0, x1) + 1, y0 + 1, black);
+            return;
+        }
+        if (x0 == x1) {
+            fillRect(x0, Math.min(y0, y1), x0 + 1, Math.max(y0, y1) + 1, black);
+            return;
+        }
+        // Bresenham
+        final int dx = Math.abs(x1 - x0);
+        final int dy = -Math.abs(y1 - y0);
+        final int sx = x0 < x1 ? 1 : -1;
+        final int sy = y0 < y1 ? 1 : -1;
+        int error = dx + dy;
+        int x = x0;
+        int y = y0;
+        while (true) {
+            setPixel(x, y, black);
+            if (x == x1 && y == y1) {
+                break;
+            }
+            final int error2 = 2 * error;
+            if (error2 >= dy) {
+                error += dy;
+                x += sx;
+            }
+            if (error2 <= dx) {
+                error += dx;
+                y += sy;
+            }
+        }
+    }
+
+    /**
+     * Draw the outline of a rectangle, one pixel wide.
+     *
+     * @param left left edge.
+     * @param top top edge.
+     * @param right right edge, exclusive.
+     * @param bottom bottom edge, exclusive.
+     * @param black true for black, false for white.
+     *
+     * @since 2
+     */
+    public void drawRect(final int left, final int top, final int right, final int bottom, final boolean black) {
+        if (right <= left || bottom <= top) {
+            return;
+        }
+        fillRect(left, top, right, top + 1, black);
+        fillRect(left, bottom - 1, right, bottom, black);
+        fillRect(left, top + 1, left + 1, bottom - 1, black);
+        fillRect(right - 1, top + 1, right, bottom - 1, black);
+    }
+
+    /**
+     * Fill a rectangle.
+     *
+     * @param left left edge.
+     * @param top top edge.
+     * @param right right edge, exclusive.
+     * @param bottom bottom edge, exclusive.
+     * @param black true for black, false for white.
+     *
+     * @since 2
+     */
+    public void fillRect(final int left, final int top, final int right, final int bottom, final boolean black) {
+        spans(left, top, right, bottom, black ? OP_SET : OP_CLEAR);
+    }
+
+    /**
+     * Invert a rectangle, black pixels become white and white pixels become black.
+     *
+     * @param left left edge.
+     * @param top top edge.
+     * @param right right edge, exclusive.
+     * @param bottom bottom edge, exclusive.
+     *
+     * @since 2
+     */
+    public void invertRect(final int left, final int top, final int right, final int bottom) {
+        spans(left, top, right, bottom, OP_INVERT);
+    }
+
+    /**
+     * Draw a part of another frame into this frame.
+     *
+     * @param src The frame to draw, which must not be this frame.
+     * @param srcX left edge of the part to draw.
+     * @param srcY top edge of the part to draw.
+     * @param width width of the part to draw.
+     * @param height height of the part to draw.
+     * @param dstX left edge in this frame.
+     * @param dstY top edge in this frame.
+     * @param mode How the pixels are combined, any value defined in {@link MonoFrame.BlitMode}.
+     *
+     * @since 2
+     */
+    public void blit(final MonoFrame src, final int srcX, final int srcY, final int width, final int height,
+            final int dstX, final int dstY, final int mode) {
+        if (src == this) {
+            throw new IllegalArgumentException("src == this");
+        }
+        blit(null, src.mBuffer, src.mStride, src.mWidth, src.mHeight, srcX, srcY, width, height, dstX, dstY, mode);
+    }
+
+    /**
+     * Draw a part of packed rows into this frame, for example an image packed by a host tool or a glyph.
+     *
+     * @param src The packed rows, most significant bit first, where a set bit is a black pixel.
+     * @param srcStride number of bytes of each row in src.
+     * @param srcX left edge of the part to draw.
+     * @param srcY top edge of the part to draw.
+     * @param width width of the part to draw.
+     * @param height height of the part to draw.
+     * @param dstX left edge in this frame.
+     * @param dstY top edge in this frame.
+     * @param mode How the pixels are combined, any value defined in {@link MonoFrame.BlitMode}.
+     *
+     * @since 2
+     */
+    public void blit(final byte[] src, final int srcStride, final int srcX, final int srcY, final int width, final int height,
+            final int dstX, final int dstY, final int mode) {
+        if (srcStride <= 0) {
+            throw new IllegalArgumentException("srcStride <= 0");
+        }
+        blit(src, null, srcStride, srcStride * 8, src.length / srcStride, srcX, srcY, width, height, dstX, dstY, mode);
+    }
+
+    /**
+     * Draw this frame rotated clockwise into another frame, for example to show a landscape frame on a portrait layout.
+     * The frame is rotated in blocks of 8x8 pixels, each block is one transpose of 64 bits, so a rotation costs far less than drawing the frame again.
+     *
+     * @param dst The frame to draw into, which must not be this frame. For 90 and 270 degrees, its width must be the height of this frame
+     * and its height the width of this frame, otherwise it must be of the same size.
+     * @param degrees 0, 90, 180 or 270.
+     * @throws IllegalArgumentException if the sizes do not match, or, for 90 and 270 degrees, are not multiples of 8.
+     *
+     * @since 2
+     */
+    public void rotate(final MonoFrame dst, final int degrees) {
+        if (dst == this) {
+            throw new IllegalArgumentException("dst == this");
+        }
+        final boolean quarter = degrees == 90 || degrees == 270;
+        if (!quarter && degrees != 0 && degrees != 180) {
+            throw new IllegalArgumentException("Unsupported rotation " + degrees);
+        }
+        if (dst.mWidth != (quarter ? mHeight : mWidth) || dst.mHeight != (quarter ? mWidth : mHeight)) {
+            throw new IllegalArgumentException("Size mismatch " + dst.mWidth + "x" + dst.mHeight);
+        }
+        if (degrees == 0) {
+            for (int i = 0; i < mBuffer.capacity(); i++) {
+                dst.mBuffer.put(i, mBuffer.get(i));
+            }
+        } else if (degrees == 180) {
+            rotate180(dst);
+        } else {
+            if ((mWidth & 7) != 0 || (mHeight & 7) != 0) {
+                throw new IllegalArgumentException("Size is not a multiple of 8");
+            }
+            rotate90(dst, degrees == 90);
+        }
+    }
+
+    /**
+     * Copy the packed frame to an array.
+     *
+     * @param out The array, of at least {@link #getStride()} * {@link #getHeight()} bytes.
+     */
+    void copyTo(final byte[] out) {
+        mBuffer.position(0);
+        mBuffer.get(out, 0, mBuffer.capacity());
+        mBuffer.position(0);
+    }
+
+    private void blit(final byte[] srcArray, final ByteBuffer srcBuffer, final int srcStride, final int srcWidth, final int srcHeight,
+            int srcX, int srcY, int width, int height, int dstX, int dstY, final int mode) {
+        if (mode != BlitMode.BLIT_COPY && mode != BlitMode.BLIT_OR && mode != BlitMode.BLIT_XOR) {
+            throw new IllegalArgumentException("Unknown blit mode " + mode);
+        }
+        // Clip against both frames
+        if (srcX < 0) {
+            width += srcX;
+            dstX -= srcX;
+            srcX = 0;
+        }
+        if (srcY < 0) {
+            height += srcY;
+            dstY -= srcY;
+            srcY = 0;
+        }
+        if (dstX < 0) {
+            width += dstX;
+            srcX -= dstX;
+            dstX = 0;
+        }
+        if (dstY < 0) {
+            height += dstY;
+            srcY -= dstY;
+            dstY = 0;
+        }
+        width = Math.min(width, Math.min(srcWidth - srcX, mWidth - dstX));
+        height = Math.min(height, Math.min(srcHeight - srcY, mHeight - dstY));
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        final int firstByte = dstX >> 3;
+        final int lastByte = (dstX + width - 1) >> 3;
+        final int firstMask = 0xFF >>> (dstX & 7);
+        final int lastMask = (0xFF << (7 - ((dstX + width - 1) & 7))) & 0xFF;
+        for (int row = 0; row < height; row++) {
+            final int srcRow = (srcY + row) * srcStride;
+            final int dstRow = (dstY + row) * mStride;
+            for (int b = firstByte; b <= lastByte; b++) {
+                int mask = 0xFF;
+                if (b == firstByte) {
+                    mask &= firstMask;
+                }
+                if (b == lastByte) {
+                    mask &= lastMask;
+                }
+                // Source bit of the first pixel of this destination byte, bits outside the source row are masked off
+                final int bit = srcX + (b << 3) - dstX;
+                final int index = bit >> 3;
+                final int shift = bit & 7;
+                int bits = readByte(srcArray, srcBuffer, srcRow, srcStride, index) << 8
+                        | readByte(srcArray, srcBuffer, srcRow, srcStride, index + 1);
+                bits = (bits >> (8 - shift)) & 0xFF;
+                final int dst = dstRow + b;
+                final int value = mBuffer.get(dst) & 0xFF;
+                final int result;
+                if (mode == BlitMode.BLIT_OR) {
+                    result = value | (bits & mask);
+                } else if (mode == BlitMode.BLIT_XOR) {
+                    result = value ^ (bits & mask);
+                } else {
+                    result = (value & ~mask) | (bits & mask);
+                }
+                mBuffer.put(dst, (byte) result);
+            }
+        }
+    }
+
+    private void rotate180(final MonoFrame dst) {
+        // Bits beyond the width end up at the start of the rows, so shift them out
+        final int pad = mStride * 8 - mWidth;
+        for (int y = 0; y < mHeight; y++) {
+            final int srcRow = y * mStride;
+            final int dstRow = (mHeight - 1 - y) * mStride;
+            for (int b = 0; b < mStride; b++) {
+                // Reversed bits of this byte and the next, so that the padding can be shifted out
+                final int high = Integer.reverse(mBuffer.get(srcRow + mStride - 1 - b) & 0xFF) >>> 24;
+                final int low = b + 1 < mStride ? Integer.reverse(mBuffer.get(srcRow + mStride - 2 - b) & 0xFF) >>> 24 : 0;
+                dst.mBuffer.put(dstRow + b, (byte) (((high << 8 | low) << pad) >>> 8));
+            }
+        }
+    }
+
+    private void rotate90(final MonoFrame dst, final boolean clockwise) {
+        final int blockColumns = mStride;
+        final int blockRows = mHeight >> 3;
+        for (int by = 0; by < blockRows; by++) {
+            for (int bx = 0; bx < blockColumns; bx++) {
+                // Block of 8x8 pixels, first row in the most significant byte
+                long block = 0;
+                for (int row = 0; row < 8; row++) {
+                    block = block << 8 | (mBuffer.get(((by << 3) + row) * mStride + bx) & 0xFF);
+                }
+                final int dstColumn;
+                final int dstRowGroup;
+                if (clockwise) {
+                    // Rows are reversed before the transpose, so the first row becomes the last column
+                    block = transpose(Long.reverseBytes(block));
+                    dstColumn = blockRows - 1 - by;
+                    dstRowGroup = bx;
+                } else {
+                    // Rows are reversed after the transpose, so the first column becomes the last row
+                    block = Long.reverseBytes(transpose(block));
+                    dstColumn = by;
+                    dstRowGroup = blockColumns - 1 - bx;
+                }
+                for (int row = 7; row >= 0; row--) {
+                    dst.mBuffer.put(((dstRowGroup << 3) + row) * dst.mStride + dstColumn, (byte) block);
+                    block >>>= 8;
+                }
+            }
+        }
+    }
+
+    /**
+     * Transpose a block of 8x8 bits, see Hacker's Delight, section 7-3.
+     *
+     * @param block rows of the block, first row in the most significant byte and first column in the most significant bit of each row.
+     * @return the transposed block.
+     */
+    private static long transpose(long block) {
+        long t = (block ^ (block >>> 7)) & 0x00AA00AA00AA00AAL;
+        block = block ^ t ^ (t << 7);
+        t = (block ^ (block >>> 14)) & 0x0000CCCC0000CCCCL;
+        block = block ^ t ^ (t << 14);
+        t = (block ^ (block >>> 28)) & 0x00000000F0F0F0F0L;
+        return block ^ t ^ (t << 28);
+    }
+
+    private static int readByte(final byte[] srcArray, final ByteBuffer srcBuffer, final int row, final int stride, final int index) {
+        if (index < 0 || index >= stride) {
+            return 0;
+        }
+        return (srcArray != null ? srcArray[row + index] : srcBuffer.get(row + index)) & 0xFF;
+    }
+
+    private void spans(int left, int top, int right, int bottom, final int op) {
+        left = Math.max(left, 0);
+        top = Math.max(top, 0);
+        right = Math.min(right, mWidth);
+        bottom = Math.min(bottom, mHeight);
+        if (right <= left || bottom <= top) {
+            return;
+        }
+        final int firstByte = left >> 3;
+        final int lastByte = (right - 1) >> 3;
+        final int firstMask = 0xFF >>> (left & 7);
+        final int lastMask = (0xFF << (7 - ((right - 1) & 7))) & 0xFF;
+        for (int y = top; y < bottom; y++) {
+            final int row = y * mStride;
+            if (firstByte == lastByte) {
+                apply(row + firstByte, firstMask & lastMask, op);
+                continue;
+            }
+            apply(row + firstByte, firstMask, op);
+            for (int b = firstByte + 1; b < lastByte; b++) {
+                if (op == OP_INVERT) {
+                    mBuffer.put(row + b, (byte) ~mBuffer.get(row + b));
+                } else {
+                    mBuffer.put(row + b, op == OP_SET ? (byte) 0xFF : 0);
+                }
+            }
+            apply(row + lastByte, lastMask, op);
+        }
+    }
+
+    private void apply(final int index, final int mask, final int op) {
+        final int value = mBuffer.get(index);
+        final int result;
+        if (op == OP_SET) {
+            result = value | mask;
+        } else if (op == OP_INVERT) {
+            result = value ^ mask;
+        } else {
+            result = value & ~mask;
+        }
+        mBuffer.put(index, (byte) result);
+    }
+
+    /**
+     * Blit mode constants. Used in {@link MonoFrame#blit(MonoFrame, int, int, int, int, int, int, int)}.
+     */
+    public interface BlitMode {
+
+        /**
+         * The pixels replace the pixels of the frame.
+         *
+         * @since 2
+         */
+        int BLIT_COPY = 0;
+
+        /**
+         * Black pixels are drawn, white pixels are transparent. Suitable for text and icons.
+         *
+         * @since 2
+         */
+        int BLIT_OR = 1;
+
+        /**
+         * Black pixels invert the pixels of the frame, white pixels are transparent.
+         *
+         * @since 2
+         */
+        int BLIT_XOR = 2;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.Arrays;
+
+/**
+ * Converts bitmaps to packed monochrome frames, see {@link SWR30#EXTRA_DISPLAY_DATA_MONOCHROME}.<br>
+ * Each row is packed to {@link #getStride(int)} bytes, most significant bit first, where a set bit is a black pixel.
+ * Grey levels are converted with the mode set by {@link #setDitherMode(int)}, see {@link Control.DitherMode}.
+ * The pixels are read one row at a time into reused buffers, so encoding does not allocate once the buffers have grown to the bitmap width.
+ */
+final class MonochromeEncoder {
+
+    /**
+     * Pixels with a luminance below this value are black.
+     */
+    static final int LUMINANCE_THRESHOLD = 128;
+
+    /**
+     * 8x8 Bayer matrix, scaled to luminance thresholds.
+     */
+    private static final int[] BAYER_THRESHOLDS = new int[64];
+
+    static {
+        final int[] bayer = {
+                0, 32, 8, 40, 2, 34, 10, 42,
+                48, 16, 56, 24, 50, 18, 58, 26,
+                12, 44, 4, 36, 14, 46, 6, 38,
+                60, 28, 52, 20, 62, 30, 54, 22,
+                3, 35, 11, 43, 1, 33, 9, 41,
+                51, 19, 59, 27, 49, 17, 57, 25,
+                15, 47, 7, 39, 13, 45, 5, 37,
+                63, 31, 55, 23, 61, 29, 53, 21
+        };
+        for (int i = 0; i < bayer.length; i++) {
+            BAYER_THRESHOLDS[i] = bayer[i] * 4 + 2;
+        }
+    }
+
+    private int mDitherMode = Control.DitherMode.DITHER_THRESHOLD;
+
+    private int[] mRowBuffer = new int[SWR30.DisplaySize.DISPLAY_SIZE_LONGEST];
+
+    // One writer per thread rather than per encoder, since the deflater of a writer holds native memory until it is ended,
+    // and an encoder is created with every control instance. Frames are only encoded on the control thread and the encode thread.
+    private static final ThreadLocal<PngWriter> sPngWriter = new ThreadLocal<PngWriter>() {
+        @Override
+        protected PngWriter initialValue() {
+            return new PngWriter();
+        }
+    };
+
+    // Error diffusion, errors are scaled by 16 and offset by one pixel to avoid bounds checks
+    private int[] mErrors = new int[SWR30.DisplaySize.DISPLAY_SIZE_LONGEST + 2];
+    private int[] mNextErrors = new int[SWR30.DisplaySize.DISPLAY_SIZE_LONGEST + 2];
+
+    /**
+     * Select how grey levels are converted to black and white.
+     *
+     * @param mode Any value defined in {@link Control.DitherMode}.
+     */
+    void setDitherMode(final int mode) {
+        if (mode != Control.DitherMode.DITHER_THRESHOLD && mode != Control.DitherMode.DITHER_ORDERED
+                && mode != Control.DitherMode.DITHER_ERROR_DIFFUSION) {
+            throw new IllegalArgumentException("Unknown dither mode " + mode);
+        }
+        mDitherMode = mode;
+    }
+
+    /**
+     * Number of bytes used by one packed row.
+     *
+     * @param width width in pixels.
+     * @return bytes per row.
+     */
+    static int getStride(final int width) {
+        return (width + 7) >> 3;
+    }
+
+    /**
+     * Number of bytes used by a packed frame.
+     *
+     * @param width width in pixels.
+     * @param height height in pixels.
+     * @return bytes per frame.
+     */
+    static int getFrameSize(final int width, final int height) {
+        return getStride(width) * height;
+    }
+
+    /**
+     * Calculates the luminance of a color, composed over a white background.
+     *
+     * @param color ARGB color.
+     * @return luminance between 0 (black) and 255 (white).
+     */
+    static int getLuminance(final int color) {
+        int alpha = color >>> 24;
+        int luminance = (((color >> 16) & 0xff) * 77 + ((color >> 8) & 0xff) * 150 + (color & 0xff) * 29) >> 8;
+        if (alpha != 0xff) {
+            luminance = (luminance * alpha + 0xff * (0xff - alpha)) / 0xff;
+        }
+        return luminance;
+    }
+
+    /**
+     * Thresholds and packs one row of pixels.
+     *
+     * @param pixels ARGB pixels of the row.
+     * @param width number of pixels in the row.
+     * @param out destination buffer.
+     * @param offset offset in the destination buffer where the row starts.
+     */
+    static void packRow(final int[] pixels, final int width, final byte[] out, final int offset) {
+        int bits = 0;
+        int x = 0;
+        int index = offset;
+        while (x < width) {
+            bits = (bits << 1) | (getLuminance(pixels[x]) < LUMINANCE_THRESHOLD ? 1 : 0);
+            x++;
+            if ((x & 7) == 0) {
+                out[index++] = (byte) bits;
+                bits = 0;
+            }
+        }
+        if ((width & 7) != 0) {
+            out[index] = (byte) (bits << (8 - (width & 7)));
+        }
+    }
+
+    /**
+     * Packs one row of pixels with ordered dithering.
+     *
+     * @param pixels ARGB pixels of the row.
+     * @param width number of pixels in the row.
+     * @param y the row number, selects the row of the Bayer matrix.
+     * @param out destination buffer.
+     * @param offset offset in the destination buffer where the row starts.
+     */
+    static void packRowOrdered(final int[] pixels, final int width, final int y, final byte[] out, final int offset) {
+        final int matrixRow = (y & 7) << 3;
+        int bits = 0;
+        int x = 0;
+        int index = offset;
+        while (x < width) {
+            bits = (bits << 1) | (getLuminance(pixels[x]) < BAYER_THRESHOLDS[matrixRow + (x & 7)] ? 1 : 0);
+            x++;
+            if ((x & 7) == 0) {
+                out[index++] = (byte) bits;
+                bits = 0;
+            }
+        }
+        if ((width & 7) != 0) {
+            out[index] = (byte) (bits << (8 - (width & 7)));
+        }
+    }
+
+    /**
+     * Packs one row of pixels with Floyd-Steinberg error diffusion.
+     * The error of the row is taken from, and the error for the next row is added to, the error buffers.
+     */
+    private void packRowErrorDiffusion(final int[] pixels, final int width, final byte[] out, final int offset) {
+        final int[] errors = mErrors;
+        final int[] nextErrors = mNextErrors;
+        int bits = 0;
+        int x = 0;
+        int index = offset;
+        while (x < width) {
+            int value = getLuminance(pixels[x]) + errors[x + 1] / 16;
+            int error;
+            if (value < LUMINANCE_THRESHOLD) {
+                bits = (bits << 1) | 1;
+                error = value;
+            } else {
+                bits = bits << 1;
+                error = value - 0xff;
+            }
+            errors[x + 2] += error * 7;
+            nextErrors[x] += error * 3;
+            nextErrors[x + 1] += error * 5;
+            nextErrors[x + 2] += error;
+            x++;
+            if ((x & 7) == 0) {
+                out[index++] = (byte) bits;
+                bits = 0;
+            }
+        }
+        if ((width & 7) != 0) {
+            out[index] = (byte) (bits << (8 - (width & 7)));
+        }
+        mErrors = nextErrors;
+        mNextErrors = errors;
+        Arrays.fill(errors, 0);
+    }
+
+    /**
+     * Converts a bitmap to a packed monochrome frame.
+     *
+     * @param bitmap the bitmap.
+     * @param out destination buffer, at least {@link #getFrameSize(int, int)} bytes.
+     */
+    void encode(final Bitmap bitmap, final byte[] out) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int stride = getStride(width);
+        final int[] row = getRowBuffer(width);
+        if (mDitherMode == Control.DitherMode.DITHER_ERROR_DIFFUSION) {
+            Arrays.fill(mErrors, 0);
+            Arrays.fill(mNextErrors, 0);
+        }
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            switch (mDitherMode) {
+                case Control.DitherMode.DITHER_ORDERED:
+                    packRowOrdered(row, width, y, out, y * stride);
+                    break;
+                case Control.DitherMode.DITHER_ERROR_DIFFUSION:
+                    packRowErrorDiffusion(row, width, out, y * stride);
+                    break;
+                default:
+                    packRow(row, width, out, y * stride);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Converts a bitmap to a newly allocated packed monochrome frame.
+     *
+     * @param bitmap the bitmap.
+     * @return the packed frame.
+     */
+    byte[] encode(final Bitmap bitmap) {
+        byte[] out = new byte[getFrameSize(bitmap.getWidth(), bitmap.getHeight())];
+        encode(bitmap, out);
+        return out;
+    }
+
+    /**
+     * Compress a packed monochrome frame to a 1-bit PNG, see {@link PngWriter}.
+     *
+     * @param frame the packed frame.
+     * @param width width in pixels.
+     * @param height height in pixels.
+     * @return the PNG data.
+     */
+    byte[] encodePng(final byte[] frame, final int width, final int height) {
+        return sPngWriter.get().write(frame, width, height);
+    }
+
+    /**
+     * Draws a packed monochrome frame to a bitmap of the same size, in pure black and white.
+     *
+     * @param frame the packed frame.
+     * @param bitmap a mutable bitmap.
+     */
+    void decode(final byte[] frame, final Bitmap bitmap) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        final int stride = getStride(width);
+        final int[] row = getRowBuffer(width);
+        for (int y = 0; y < height; y++) {
+            final int offset = y * stride;
+            for (int x = 0; x < width; x++) {
+                row[x] = (frame[offset + (x >> 3)] & (0x80 >> (x & 7))) != 0 ? Color.BLACK : Color.WHITE;
+            }
+            bitmap.setPixels(row, 0, width, 0, y, width, 1);
+        }
+    }
+
+    private int[] getRowBuffer(final int width) {
+        if (mRowBuffer.length < width) {
+            mRowBuffer = new int[width];
+            mErrors = new int[width + 2];
+            mNextErrors = new int[width + 2];
+        }
+        return mRowBuffer;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.os.Handler;
+
+import java.util.ArrayList;
+
+/**
+ * The result of a request to the host application, such as {@link Control#requestBatteryStatus(PendingResult.Callback)}, completed when the
+ * matching reply arrives. The request fails with {@link PendingResult.Failure#FAILURE_TIMEOUT} if no reply arrives within
+ * {@link Control#REQUEST_TIMEOUT_MILLIS}, and with {@link PendingResult.Failure#FAILURE_CANCELLED} if the control is stopped first.<br>
+ * A pending result never blocks: callbacks are called on the thread of the control, which is also the thread that receives the reply.
+ * A pending result is not thread safe, and should be used on the thread of the control.
+ *
+ * @param <T> The type of the result.
+ *
+ * @since 2
+ */
+public final class PendingResult<T> {
+
+    /**
+     * Called when a pending result is completed.
+     *
+     * @param <T> The type of the result.
+     *
+     * @since 2
+     */
+    public interface Callback<T> {
+
+        /**
+         * Called when the reply has arrived.
+         *
+         * @param result The result.
+         *
+         * @since 2
+         */
+        void onResult(T result);
+
+        /**
+         * Called when the request has failed.
+         *
+         * @param failure Any value defined in {@link PendingResult.Failure}.
+         *
+         * @since 2
+         */
+        void onFailure(int failure);
+    }
+
+    /**
+     * Failure constants. See {@link PendingResult.Callback#onFailure(int)}.
+     *
+     * @since 2
+     */
+    public interface Failure {
+        /**
+         * No reply arrived in time.
+         *
+         * @since 2
+         */
+        int FAILURE_TIMEOUT = 1;
+
+        /**
+         * The control was stopped before the reply arrived.
+         *
+         * @since 2
+         */
+        int FAILURE_CANCELLED = 2;
+    }
+
+    private final Handler mHandler;
+    private final ArrayList<Callback<T>> mCallbacks = new ArrayList<Callback<T>>(1);
+    private boolean mDone;
+    private T mResult;
+    private int mFailure;
+
+    private final Runnable mTimeout = new Runnable() {
+        @Override
+        public void run() {
+            fail(Failure.FAILURE_TIMEOUT);
+        }
+    };
+
+    PendingResult(final Handler handler, final long timeoutMillis) {
+        mHandler = handler;
+        mHandler.postDelayed(mTimeout, timeoutMillis);
+    }
+
+    /**
+     * Create a result that is already completed, for example from a cache.
+     */
+    PendingResult(final T result) {
+        mHandler = null;
+        mResult = result;
+        mDone = true;
+    }
+
+    /**
+     * Add a callback to be called when the result is completed. If it is already completed, the callback is called before this method returns.
+     *
+     * @param callback The callback.
+     *
+     * @since 2
+     */
+    public void addCallback(final Callback<T> callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("callback == null");
+        }
+        if (mDone) {
+            deliver(callback);
+        } else {
+            mCallbacks.add(callback);
+        }
+    }
+
+    /**
+     * Remove a callback, for example when the caller is no longer interested in the result. The request itself is not cancelled,
+     * since it may be shared with other callers.
+     *
+     * @param callback The callback.
+     *
+     * @since 2
+     */
+    public void removeCallback(final Callback<T> callback) {
+        mCallbacks.remove(callback);
+    }
+
+    /**
+     * @return true if the result has arrived or the request has failed.
+     *
+     * @since 2
+     */
+    public boolean isDone() {
+        return mDone;
+    }
+
+    /**
+     * @return The result, or null if it has not arrived or the request has failed.
+     *
+     * @since 2
+     */
+    public T getResult() {
+        return mResult;
+    }
+
+    /**
+     * @return Any value defined in {@link PendingResult.Failure}, or 0 if the request has not failed.
+     *
+     * @since 2
+     */
+    public int getFailure() {
+        return mFailure;
+    }
+
+    void complete(final T result) {
+        if (mDone) {
+            return;
+        }
+        mResult = result;
+        finish();
+    }
+
+    void fail(final int failure) {
+        if (mDone) {
+            return;
+        }
+        mFailure = failure;
+        finish();
+    }
+
+    private void finish() {
+        mDone = true;
+        mHandler.removeCallbacks(mTimeout);
+        for (int i = 0; i < mCallbacks.size(); i++) {
+            deliver(mCallbacks.get(i));
+        }
+        mCallbacks.clear();
+    }
+
+    private void deliver(final Callback<T> callback) {
+        if (mFailure != 0) {
+            callback.onFailure(mFailure);
+        } else {
+            callback.onResult(mResult);
+        }
+    }
+}
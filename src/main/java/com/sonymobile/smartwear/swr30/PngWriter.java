@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes packed monochrome frames as 1-bit greyscale PNG images, for host applications that only accept PNG, see {@link Control.FrameFormat#FRAME_FORMAT_PNG}.<br>
+ * A 1-bit image is a fraction of the size of the 24-bit image written by {@link android.graphics.Bitmap#compress(android.graphics.Bitmap.CompressFormat, int, java.io.OutputStream)},
+ * and is written straight from the packed rows. Each row is filtered with None or Up, whichever gives the most zero bytes; the other PNG filters
+ * work on whole pixels and do not help 1-bit images. The deflater and the buffers are reused, so a writer should only be used on one thread.
+ * {@link MonochromeEncoder} keeps one writer per thread.
+ */
+final class PngWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+    private static final int CHUNK_IHDR = 0x49484452;
+    private static final int CHUNK_IDAT = 0x49444154;
+    private static final int CHUNK_IEND = 0x49454E44;
+
+    private static final int IHDR_LENGTH = 13;
+
+    // Length, type and CRC of a chunk
+    private static final int CHUNK_OVERHEAD = 12;
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_UP = 2;
+
+    private final Deflater mDeflater = new Deflater(Deflater.BEST_COMPRESSION);
+    private final CRC32 mCrc = new CRC32();
+
+    private byte[] mFiltered = new byte[0];
+    private byte[] mCompressed = new byte[1024];
+    private byte[] mRow = new byte[0];
+    private byte[] mPreviousRow = new byte[0];
+
+    /**
+     * Write a packed frame as PNG.
+     *
+     * @param frame the packed frame, where a set bit is a black pixel.
+     * @param width width in pixels.
+     * @param height height in pixels.
+     * @return the PNG data.
+     */
+    byte[] write(final byte[] frame, final int width, final int height) {
+        final int compressedLength = compress(frame, MonochromeEncoder.getStride(width), height);
+        final byte[] png = new byte[SIGNATURE.length + CHUNK_OVERHEAD + IHDR_LENGTH + CHUNK_OVERHEAD + compressedLength + CHUNK_OVERHEAD];
+        System.arraycopy(SIGNATURE, 0, png, 0, SIGNATURE.length);
+        int pos = SIGNATURE.length;
+
+        final byte[] header = new byte[IHDR_LENGTH];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        // Bit depth 1, greyscale, deflate, adaptive filtering, no interlace
+        header[8] = 1;
+        pos = writeChunk(png, pos, CHUNK_IHDR, header, IHDR_LENGTH);
+        pos = writeChunk(png, pos, CHUNK_IDAT, mCompressed, compressedLength);
+        writeChunk(png, pos, CHUNK_IEND, header, 0);
+        return png;
+    }
+
+    /**
+     * Filter and compress the rows of a frame into {@link #mCompressed}.
+     *
+     * @return the compressed length.
+     */
+    private int compress(final byte[] frame, final int stride, final int height) {
+        final int filteredLength = (stride + 1) * height;
+        if (mFiltered.length < filteredLength) {
+            mFiltered = new byte[filteredLength];
+        }
+        if (mRow.length < stride) {
+            mRow = new byte[stride];
+            mPreviousRow = new byte[stride];
+        }
+        byte[] row = mRow;
+        byte[] previous = mPreviousRow;
+        int pos = 0;
+        for (int y = 0; y < height; y++) {
+            // In greyscale a set bit is white, so invert
+            int zeros = 0;
+            int upZeros = 0;
+            for (int i = 0; i < stride; i++) {
+                row[i] = (byte) ~frame[y * stride + i];
+                if (row[i] == 0) {
+                    zeros++;
+                }
+                if (y > 0 && row[i] == previous[i]) {
+                    upZeros++;
+                }
+            }
+            if (y > 0 && upZeros > zeros) {
+                mFiltered[pos++] = FILTER_UP;
+                for (int i = 0; i < stride; i++) {
+                    mFiltered[pos++] = (byte) (row[i] - previous[i]);
+                }
+            } else {
+                mFiltered[pos++] = FILTER_NONE;
+                System.arraycopy(row, 0, mFiltered, pos, stride);
+                pos += stride;
+            }
+            final byte[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+
+        mDeflater.reset();
+        mDeflater.setInput(mFiltered, 0, filteredLength);
+        mDeflater.finish();
+        int length = 0;
+        while (!mDeflater.finished()) {
+            if (length == mCompressed.length) {
+                final byte[] grown = new byte[mCompressed.length * 2];
+                System.arraycopy(mCompressed, 0, grown, 0, length);
+                mCompressed = grown;
+            }
+            length += mDeflater.deflate(mCompressed, length, mCompressed.length - length);
+        }
+        return length;
+    }
+
+    private int writeChunk(final byte[] out, int pos, final int type, final byte[] data, final int length) {
+        putInt(out, pos, length);
+        putInt(out, pos + 4, type);
+        System.arraycopy(data, 0, out, pos + 8, length);
+        mCrc.reset();
+        mCrc.update(out, pos + 4, 4 + length);
+        pos += 8 + length;
+        putInt(out, pos, (int) mCrc.getValue());
+        return pos + 4;
+    }
+
+    private static void putInt(final byte[] out, final int pos, final int value) {
+        out[pos] = (byte) (value >>> 24);
+        out[pos + 1] = (byte) (value >>> 16);
+        out[pos + 2] = (byte) (value >>> 8);
+        out[pos + 3] = (byte) value;
+    }
+}
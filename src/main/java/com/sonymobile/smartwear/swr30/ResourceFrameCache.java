@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.util.LongSparseArray;
+
+/**
+ * Least recently used cache of drawable resources converted to packed monochrome frames, see {@link Control#setResourceCacheSize(int)}.<br>
+ * The cache is bounded by the total size of the frames in bytes, at most {@link #MAX_SIZE_LIMIT}. It is shared by all controls of the extension,
+ * so that the frames survive a control being stopped and started again, and it is as large as the largest size asked for by a control.<br>
+ * Entries are found by a primitive key and kept in a list in order of use, so that a lookup does not allocate.
+ */
+final class ResourceFrameCache {
+
+    /**
+     * Upper limit of the total size of the cached frames in bytes, whatever size the controls ask for.
+     */
+    static final int MAX_SIZE_LIMIT = 1024 * 1024;
+
+    /**
+     * A cached frame.
+     */
+    static final class Entry {
+        final byte[] mFrame;
+        final int mWidth;
+        final int mHeight;
+
+        // Guarded by the cache
+        long mKey;
+        Entry mNewer;
+        Entry mOlder;
+
+        Entry(final byte[] frame, final int width, final int height) {
+            mFrame = frame;
+            mWidth = width;
+            mHeight = height;
+        }
+    }
+
+    private final LongSparseArray<Entry> mEntries = new LongSparseArray<Entry>();
+    // The most and the least recently used entry
+    private Entry mNewest;
+    private Entry mOldest;
+    private int mMaxSize;
+    private int mSize;
+
+    /**
+     * The key of a resource. The same drawable converted with another dither mode is another frame.
+     *
+     * @param resourceId the resource ID.
+     * @param ditherMode the dither mode, see {@link Control.DitherMode}.
+     * @return the key.
+     */
+    static long getKey(final int resourceId, final int ditherMode) {
+        return (long) ditherMode << 32 | (resourceId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Grow the maximum total size of the cached frames, up to {@link #MAX_SIZE_LIMIT}. The cache never shrinks, since other controls may rely on the size they asked for.
+     *
+     * @param maxSize size in bytes.
+     */
+    synchronized void ensureMaxSize(final int maxSize) {
+        mMaxSize = Math.max(mMaxSize, Math.min(maxSize, MAX_SIZE_LIMIT));
+    }
+
+    /**
+     * Get a frame.
+     *
+     * @param key the key, see {@link #getKey(int, int)}.
+     * @return the frame, or null if it is not cached.
+     */
+    synchronized Entry get(final long key) {
+        final Entry entry = mEntries.get(key);
+        if (entry != null && entry != mNewest) {
+            unlink(entry);
+            linkNewest(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Add a frame. The frame is kept by reference and must not be modified afterwards.
+     *
+     * @param key the key, see {@link #getKey(int, int)}.
+     * @param entry the frame, not added before.
+     */
+    synchronized void put(final long key, final Entry entry) {
+        if (entry.mFrame.length > mMaxSize) {
+            return;
+        }
+        final Entry previous = mEntries.get(key);
+        if (previous != null) {
+            remove(previous);
+        }
+        entry.mKey = key;
+        mEntries.put(key, entry);
+        linkNewest(entry);
+        mSize += entry.mFrame.length;
+        while (mSize > mMaxSize) {
+            remove(mOldest);
+        }
+    }
+
+    private void remove(final Entry entry) {
+        mEntries.remove(entry.mKey);
+        unlink(entry);
+        mSize -= entry.mFrame.length;
+    }
+
+    private void linkNewest(final Entry entry) {
+        entry.mOlder = mNewest;
+        entry.mNewer = null;
+        if (mNewest != null) {
+            mNewest.mNewer = entry;
+        } else {
+            mOldest = entry;
+        }
+        mNewest = entry;
+    }
+
+    private void unlink(final Entry entry) {
+        if (entry.mNewer != null) {
+            entry.mNewer.mOlder = entry.mOlder;
+        } else {
+            mNewest = entry.mOlder;
+        }
+        if (entry.mOlder != null) {
+            entry.mOlder.mNewer = entry.mNewer;
+        } else {
+            mOldest = entry.mNewer;
+        }
+        entry.mNewer = null;
+        entry.mOlder = null;
+    }
+}
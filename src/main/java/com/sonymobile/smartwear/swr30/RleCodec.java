@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+/**
+ * Run-length codec for packed monochrome frames, see {@link Control#setFrameCodec(int)}.<br>
+ * The data is encoded with PackBits, over the whole frame rather than row by row, since a frame is mostly long runs of white.
+ * Each run starts with a header byte n:
+ * <ul>
+ *     <li>0 to 127: n + 1 literal bytes follow.</li>
+ *     <li>-127 to -1: the next byte is repeated 1 - n times.</li>
+ *     <li>-128: no operation, the next byte is a new header.</li>
+ * </ul>
+ * A white 296*128 frame of 4736 bytes is encoded to 74 bytes, and the encoded size of any data is at most {@link #getMaxEncodedSize(int)}.
+ * Both directions are available, so that a host application, or a test of the extension, can decode the frames sent.
+ *
+ * @since 2
+ */
+public final class RleCodec {
+
+    /**
+     * Longest run or literal sequence of one header.
+     */
+    private static final int MAX_RUN = 128;
+
+    private RleCodec() {
+    }
+
+    /**
+     * Get the largest possible size of encoded data.
+     *
+     * @param length Length of the data to encode.
+     * @return the largest number of bytes {@link #encode(byte[], int, int, byte[])} may write.
+     *
+     * @since 2
+     */
+    public static int getMaxEncodedSize(final int length) {
+        return length + (length + MAX_RUN - 1) / MAX_RUN;
+    }
+
+    /**
+     * Encode data.
+     *
+     * @param data The data.
+     * @return the encoded data.
+     *
+     * @since 2
+     */
+    public static byte[] encode(final byte[] data) {
+        final byte[] buffer = new byte[getMaxEncodedSize(data.length)];
+        final int length = encode(data, 0, data.length, buffer);
+        final byte[] encoded = new byte[length];
+        System.arraycopy(buffer, 0, encoded, 0, length);
+        return encoded;
+    }
+
+    /**
+     * Encode data into a buffer, which can be reused to avoid allocations.
+     *
+     * @param data The data.
+     * @param offset Offset of the first byte to encode.
+     * @param length Number of bytes to encode.
+     * @param out The buffer, of at least {@link #getMaxEncodedSize(int)} bytes.
+     * @return the number of bytes written to the buffer.
+     *
+     * @since 2
+     */
+    public static int encode(final byte[] data, final int offset, final int length, final byte[] out) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IllegalArgumentException("Range out of bounds");
+        }
+        if (out.length < getMaxEncodedSize(length)) {
+            throw new IllegalArgumentException("Buffer too small");
+        }
+        final int end = offset + length;
+        int in = offset;
+        int pos = 0;
+        while (in < end) {
+            final byte value = data[in];
+            int run = 1;
+            while (in + run < end && run < MAX_RUN && data[in + run] == value) {
+                run++;
+            }
+            if (run > 1) {
+                out[pos++] = (byte) (1 - run);
+                out[pos++] = value;
+                in += run;
+            } else {
+                // Literals continue until a run of three, which is shorter as a run of its own
+                final int start = in;
+                while (in < end && in - start < MAX_RUN) {
+                    if (in + 2 < end && data[in] == data[in + 1] && data[in] == data[in + 2]) {
+                        break;
+                    }
+                    in++;
+                }
+                final int count = in - start;
+                out[pos++] = (byte) (count - 1);
+                System.arraycopy(data, start, out, pos, count);
+                pos += count;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Decode data.
+     *
+     * @param encoded The encoded data.
+     * @param length Length of the decoded data, for a frame see {@link SWR30#EXTRA_DISPLAY_DATA_MONOCHROME}.
+     * @return the decoded data.
+     * @throws IllegalArgumentException if the encoded data is malformed or does not decode to length bytes.
+     *
+     * @since 2
+     */
+    public static byte[] decode(final byte[] encoded, final int length) {
+        final byte[] data = new byte[length];
+        if (decode(encoded, 0, encoded.length, data) != length) {
+            throw new IllegalArgumentException("Encoded data is shorter than " + length + " bytes");
+        }
+        return data;
+    }
+
+    /**
+     * Decode data into a buffer.
+     *
+     * @param encoded The encoded data.
+     * @param offset Offset of the first byte to decode.
+     * @param length Number of bytes to decode.
+     * @param out The buffer.
+     * @return the number of bytes written to the buffer.
+     * @throws IllegalArgumentException if the encoded data is malformed or does not fit in the buffer.
+     *
+     * @since 2
+     */
+    public static int decode(final byte[] encoded, final int offset, final int length, final byte[] out) {
+        if (offset < 0 || length < 0 || offset + length > encoded.length) {
+            throw new IllegalArgumentException("Range out of bounds");
+        }
+        final int end = offset + length;
+        int in = offset;
+        int pos = 0;
+        while (in < end) {
+            final int header = encoded[in++];
+            if (header >= 0) {
+                final int count = header + 1;
+                if (in + count > end || pos + count > out.length) {
+                    throw new IllegalArgumentException("Malformed literal at " + (in - 1));
+                }
+                System.arraycopy(encoded, in, out, pos, count);
+                in += count;
+                pos += count;
+            } else if (header != -MAX_RUN) {
+                final int count = 1 - header;
+                if (in >= end || pos + count > out.length) {
+                    throw new IllegalArgumentException("Malformed run at " + (in - 1));
+                }
+                final byte value = encoded[in++];
+                for (int i = 0; i < count; i++) {
+                    out[pos++] = value;
+                }
+            }
+        }
+        return pos;
+    }
+}
@@ -201,6 +201,13 @@ public final class SWR30 {
      *     <li>{@link #EXTRA_CONTROL_INSTANCE_ID}</li>
      *     <li>{@link #EXTRA_DISPLAY_DATA_URI}</li>
      *     <li>{@link #EXTRA_DISPLAY_DATA_RAW}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_MONOCHROME}</li>
+     *     <li>{@link #EXTRA_IMAGE_WIDTH}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_CODEC}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_OFFSET}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_LENGTH}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_SEQUENCE}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_TRANSFER_ID}</li>
      * </ul>
      * @since 1
      */
@@ -377,6 +384,8 @@ public final class SWR30 {
      * <ul>
      *     <li>{@link #EXTRA_CONTROL_INSTANCE_ID}</li>
      *     <li>{@link #EXTRA_START_IMAGE_DATA_RAW}</li>
+     *     <li>{@link #EXTRA_START_IMAGE_DATA_MONOCHROME}</li>
+     *     <li>{@link #EXTRA_IMAGE_WIDTH}</li>
      * </ul>
      * </p>
      *
@@ -409,6 +418,8 @@ public final class SWR30 {
      * <ul>
      *     <li>{@link #EXTRA_CONTROL_INSTANCE_ID}</li>
      *     <li>{@link #EXTRA_PREVIEW_IMAGE_DATA_RAW}</li>
+     *     <li>{@link #EXTRA_PREVIEW_IMAGE_DATA_MONOCHROME}</li>
+     *     <li>{@link #EXTRA_IMAGE_WIDTH}</li>
      * </ul>
      * </p>
      *
@@ -432,6 +443,107 @@ public final class SWR30 {
      */
     static final int MSG_MAKE_CALL = 23;
 
+    /**
+     * @see Control#setDeltaUpdatesEnabled(boolean)
+     *
+     * <p>
+     * Updates regions of the image last shown by {@link #MSG_DISPLAY_UPDATE} or {@link #MSG_DISPLAY_UPDATE_DELTA}.
+     * Message-extra data:
+     * </p>
+     * <ul>
+     *     <li>{@link #EXTRA_CONTROL_INSTANCE_ID}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DELTA_RECTS}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_MONOCHROME}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_CODEC}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_OFFSET}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_LENGTH}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_SEQUENCE}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_TRANSFER_ID}</li>
+     * </ul>
+     * </p>
+     *
+     * @since 2
+     */
+    static final int MSG_DISPLAY_UPDATE_DELTA = 24;
+
+    /**
+     * @see Control#setSharedMemoryEnabled(boolean)
+     *
+     * <p>
+     * Passes the shared memory region that the following display updates of the control are written to, see {@link #EXTRA_DISPLAY_DATA_OFFSET}.
+     * Sent once, before the first display update that uses the region. The region is valid until the control is stopped.
+     * Message-extra data:
+     * </p>
+     * <ul>
+     *     <li>{@link #EXTRA_CONTROL_INSTANCE_ID}</li>
+     *     <li>{@link #EXTRA_DISPLAY_SHARED_MEMORY}</li>
+     * </ul>
+     *
+     * @since 2
+     */
+    static final int MSG_DISPLAY_SHARED_MEMORY = 25;
+
+    /**
+     * @see Control#showImageRegion(android.graphics.Rect, android.graphics.Bitmap)
+     *
+     * <p>
+     * Replaces one region of the image last shown by {@link #MSG_DISPLAY_UPDATE}, {@link #MSG_DISPLAY_UPDATE_DELTA} or {@link #MSG_DISPLAY_UPDATE_REGION}.
+     * Message-extra data:
+     * </p>
+     * <ul>
+     *     <li>{@link #EXTRA_CONTROL_INSTANCE_ID}</li>
+     *     <li>{@link #EXTRA_DISPLAY_REGION}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_MONOCHROME}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_CODEC}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_OFFSET}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_LENGTH}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_SEQUENCE}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_TRANSFER_ID}</li>
+     * </ul>
+     *
+     * @since 2
+     */
+    static final int MSG_DISPLAY_UPDATE_REGION = 26;
+
+    /**
+     * @see Control#beginBatch()
+     * @see Control#commitBatch()
+     *
+     * <p>
+     * Several commands of one control, to be applied together and in order. Each command is the extras of the message it replaces,
+     * with the message type in {@link #EXTRA_BATCH_COMMAND_TYPE}.
+     * Message-extra data:
+     * </p>
+     * <ul>
+     *     <li>{@link #EXTRA_CONTROL_INSTANCE_ID}</li>
+     *     <li>{@link #EXTRA_BATCH_COMMANDS}</li>
+     * </ul>
+     *
+     * @since 2
+     */
+    static final int MSG_BATCH = 27;
+
+    /**
+     * @see Control#setChunkSize(int)
+     *
+     * <p>
+     * One part of the frame data of a display update that is too large to be sent in one message. The parts of a transfer are sent in order,
+     * followed by the display update, which carries {@link #EXTRA_DISPLAY_DATA_TRANSFER_ID} instead of the data. The data of the display update
+     * is the parts joined in order of {@link #EXTRA_DISPLAY_DATA_CHUNK_INDEX}.
+     * Message-extra data:
+     * </p>
+     * <ul>
+     *     <li>{@link #EXTRA_CONTROL_INSTANCE_ID}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_TRANSFER_ID}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_CHUNK_INDEX}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_CHUNK_COUNT}</li>
+     *     <li>{@link #EXTRA_DISPLAY_DATA_CHUNK}</li>
+     * </ul>
+     *
+     * @since 2
+     */
+    static final int MSG_DISPLAY_DATA_CHUNK = 28;
+
     /**
      * Message-extra that indicates the result of {@link SWR30#MSG_SET_SMART_ALARM} .
      * <p>
@@ -634,6 +746,186 @@ public final class SWR30 {
      */
     static final String EXTRA_PREVIEW_IMAGE_DATA_RAW = "preview_image_data_raw";
 
+    /**
+     * The name of the Message-extra used to identify the data to be displayed on the accessory
+     * display as a packed monochrome frame. This is used instead of {@link #EXTRA_DISPLAY_DATA_RAW} when the control
+     * has selected {@link Control.FrameFormat#FRAME_FORMAT_MONOCHROME}, see {@link Control#setFrameFormat(int)}.<br>
+     * Each row is packed to width / 8 bytes, most significant bit first, where a set bit is a black pixel.
+     * The width of the frame is given by {@link #EXTRA_IMAGE_WIDTH}, a 296*128 frame is 4736 bytes.
+     * <p>
+     * TYPE: BYTE ARRAY
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_DATA_MONOCHROME = "display_data_monochrome";
+
+    /**
+     * The name of the Message-extra used to identify the start image as a packed monochrome frame, see {@link #EXTRA_DISPLAY_DATA_MONOCHROME} and {@link Control#getImageFormat()}.
+     * <p>
+     * TYPE: BYTE ARRAY
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_START_IMAGE_DATA_MONOCHROME = "start_image_data_monochrome";
+
+    /**
+     * The name of the Message-extra used to identify the preview image as a packed monochrome frame, see {@link #EXTRA_DISPLAY_DATA_MONOCHROME} and {@link Control#getImageFormat()}.
+     * <p>
+     * TYPE: BYTE ARRAY
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_PREVIEW_IMAGE_DATA_MONOCHROME = "preview_image_data_monochrome";
+
+    /**
+     * The name of the Message-extra carrying the width in pixels of a packed monochrome frame.
+     * The height is the length of the frame divided by width / 8.
+     * <p>
+     * TYPE: INTEGER (int)
+     * </p>
+     * <p>
+     * ALLOWED VALUES:
+     * 296 or 128.
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_IMAGE_WIDTH = "image_width";
+
+    /**
+     * The name of the Message-extra carrying the regions updated by {@link #MSG_DISPLAY_UPDATE_DELTA}.
+     * Each region is four integers: x, y, width and height in pixels. x and width are multiples of 8.<br>
+     * The {@link #EXTRA_DISPLAY_DATA_MONOCHROME} of the message holds the packed rows of each region, width / 8 bytes per row, one region after another.
+     * <p>
+     * TYPE: INTEGER ARRAY (int[])
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_DELTA_RECTS = "display_delta_rects";
+
+    /**
+     * The name of the Message-extra carrying the region updated by {@link #MSG_DISPLAY_UPDATE_REGION}.
+     * The region is four integers: x, y, width and height in pixels. x and width are multiples of 8.<br>
+     * The {@link #EXTRA_DISPLAY_DATA_MONOCHROME} of the message holds the packed rows of the region, width / 8 bytes per row.
+     * <p>
+     * TYPE: INTEGER ARRAY (int[])
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_REGION = "display_region";
+
+    /**
+     * The name of the Message-extra carrying the commands of {@link #MSG_BATCH}.
+     * <p>
+     * TYPE: PARCELABLE ARRAY LIST (ArrayList&lt;Bundle&gt;)
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_BATCH_COMMANDS = "batch_commands";
+
+    /**
+     * The name of the Message-extra carrying the message type of a command in {@link #EXTRA_BATCH_COMMANDS}, for example {@link #MSG_VIBRATE_START}.
+     * <p>
+     * TYPE: INTEGER (int)
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_BATCH_COMMAND_TYPE = "batch_command_type";
+
+    /**
+     * The name of the Message-extra telling which codec was used to encode {@link #EXTRA_DISPLAY_DATA_MONOCHROME}, see {@link Control#setFrameCodec(int)}.
+     * When the extra is missing, the data is not encoded. Encoded data is decoded to the length given by {@link #EXTRA_IMAGE_WIDTH},
+     * or by the regions of {@link #EXTRA_DISPLAY_DELTA_RECTS}, before it is used.
+     * <p>
+     * TYPE: INTEGER (int)
+     * </p>
+     * <p>
+     * ALLOWED VALUES:
+     * Any codec defined in {@link com.sonymobile.smartwear.swr30.SWR30.FrameCodec}.
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_DATA_CODEC = "display_data_codec";
+
+    /**
+     * The name of the Message-extra carrying the shared memory region of {@link #MSG_DISPLAY_SHARED_MEMORY}.
+     * <p>
+     * TYPE: PARCELABLE (android.os.SharedMemory)
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_SHARED_MEMORY = "display_shared_memory";
+
+    /**
+     * The name of the Message-extra carrying the offset in bytes of the frame data in the shared memory region, see {@link #MSG_DISPLAY_SHARED_MEMORY}.
+     * This is used instead of a byte array in the message. The data is {@link #EXTRA_DISPLAY_DATA_MONOCHROME} in {@link #MSG_DISPLAY_UPDATE_DELTA},
+     * in {@link #MSG_DISPLAY_UPDATE_REGION}, and in
+     * {@link #MSG_DISPLAY_UPDATE} when {@link #EXTRA_IMAGE_WIDTH} is set, otherwise it is {@link #EXTRA_DISPLAY_DATA_RAW}.<br>
+     * The four bytes before the offset hold the sequence number of the frame as a big-endian int. If it differs from {@link #EXTRA_DISPLAY_DATA_SEQUENCE},
+     * after the data has been read, the frame was overwritten by a newer frame and should be dropped.
+     * <p>
+     * TYPE: INTEGER (int)
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_DATA_OFFSET = "display_data_offset";
+
+    /**
+     * The name of the Message-extra carrying the length in bytes of the frame data in the shared memory region, see {@link #EXTRA_DISPLAY_DATA_OFFSET}.
+     * <p>
+     * TYPE: INTEGER (int)
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_DATA_LENGTH = "display_data_length";
+
+    /**
+     * The name of the Message-extra carrying the sequence number of the frame in the shared memory region, see {@link #EXTRA_DISPLAY_DATA_OFFSET}.
+     * The sequence number increases with every frame and is never 0.
+     * <p>
+     * TYPE: INTEGER (int)
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_DATA_SEQUENCE = "display_data_sequence";
+
+    /**
+     * The name of the Message-extra identifying a chunked transfer, see {@link #MSG_DISPLAY_DATA_CHUNK}.
+     * In a display update, it is used instead of a byte array in the message, like {@link #EXTRA_DISPLAY_DATA_OFFSET}.
+     * The transfer id increases with every transfer of the control and is never 0.
+     * <p>
+     * TYPE: INTEGER (int)
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_DATA_TRANSFER_ID = "display_data_transfer_id";
+
+    /**
+     * The name of the Message-extra carrying the index of a part in its transfer, from 0, see {@link #MSG_DISPLAY_DATA_CHUNK}.
+     * <p>
+     * TYPE: INTEGER (int)
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_DATA_CHUNK_INDEX = "display_data_chunk_index";
+
+    /**
+     * The name of the Message-extra carrying the number of parts in a transfer, see {@link #MSG_DISPLAY_DATA_CHUNK}.
+     * <p>
+     * TYPE: INTEGER (int)
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_DATA_CHUNK_COUNT = "display_data_chunk_count";
+
+    /**
+     * The name of the Message-extra carrying the data of a part, see {@link #MSG_DISPLAY_DATA_CHUNK}.
+     * <p>
+     * TYPE: BYTE ARRAY (byte[])
+     * </p>
+     * @since 2
+     */
+    static final String EXTRA_DISPLAY_DATA_CHUNK = "display_data_chunk";
+
     /**
      * The name of the Message-extra used to carry the time stamp of the key or tap event
      * <p>
@@ -872,6 +1164,26 @@ public final class SWR30 {
         int DISPLAY_SIZE_SHORTEST = 128;
     }
 
+    /**
+     * Constants definitions for {@link com.sonymobile.smartwear.swr30.Control.FrameCodec}
+     */
+    interface FrameCodec {
+
+        /**
+         * Defines {@link com.sonymobile.smartwear.swr30.Control.FrameCodec#FRAME_CODEC_NONE}
+         *
+         * @since 2
+         */
+        int FRAME_CODEC_NONE = 0;
+
+        /**
+         * Defines {@link com.sonymobile.smartwear.swr30.Control.FrameCodec#FRAME_CODEC_RLE}
+         *
+         * @since 2
+         */
+        int FRAME_CODEC_RLE = 1;
+    }
+
     /**
      * Constants definitions for {@link com.sonymobile.smartwear.swr30.ExtensionService.AccessoryConnectionStatus}
      */
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A shared memory region that frames are written to instead of being put into message extras, see {@link Control#setSharedMemoryEnabled(boolean)}.<br>
+ * The region is created once per control and passed to the host application with {@link SWR30#MSG_DISPLAY_SHARED_MEMORY}. It is split into
+ * {@link #SLOT_COUNT} slots that are used in turn, so a frame is not overwritten until several newer frames have been sent. Each slot starts with the
+ * sequence number of the frame it holds, see {@link SWR30#EXTRA_DISPLAY_DATA_SEQUENCE}, followed by the frame data.
+ * Only used on the encode thread, and only on Android 8.1 and later. Callers check the API level before this class is loaded.
+ */
+@TargetApi(Build.VERSION_CODES.O_MR1)
+final class SharedFrameBuffer {
+
+    /**
+     * Number of slots in the region.
+     */
+    static final int SLOT_COUNT = 4;
+
+    /**
+     * Size of a slot in bytes, including the header. Larger frames are sent in message extras.
+     */
+    static final int SLOT_SIZE = 16 * 1024;
+
+    /**
+     * Size of the slot header, the sequence number of the frame as an int.
+     */
+    static final int HEADER_SIZE = 4;
+
+    private final SharedMemory mMemory;
+    private final ByteBuffer mBuffer;
+    private int mSequence;
+    private int mNextSlot;
+
+    private SharedFrameBuffer(final SharedMemory memory, final ByteBuffer buffer) {
+        mMemory = memory;
+        mBuffer = buffer;
+    }
+
+    /**
+     * Create a region.
+     *
+     * @param name Name of the region, for debugging.
+     * @return the region, or null if it could not be created.
+     */
+    static SharedFrameBuffer create(final String name) {
+        SharedMemory memory = null;
+        try {
+            memory = SharedMemory.create(name, SLOT_COUNT * SLOT_SIZE);
+            return new SharedFrameBuffer(memory, memory.mapReadWrite());
+        } catch (ErrnoException e) {
+            Dbg.e("Could not create shared memory: ", e);
+            if (memory != null) {
+                memory.close();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns the region, to be passed to the host application.
+     *
+     * @return the region.
+     */
+    SharedMemory getSharedMemory() {
+        return mMemory;
+    }
+
+    /**
+     * Write data to the next slot and put its offset, length and sequence number into message extras.
+     *
+     * @param extras The extras.
+     * @param data The data.
+     * @param length Number of bytes to write, starting at the beginning of data.
+     * @return true if the data was written, false if it does not fit in a slot.
+     */
+    boolean put(final Bundle extras, final byte[] data, final int length) {
+        if (length > SLOT_SIZE - HEADER_SIZE) {
+            return false;
+        }
+        final int slot = mNextSlot * SLOT_SIZE;
+        mNextSlot = (mNextSlot + 1) % SLOT_COUNT;
+        // Zero is never used, so the host can tell a slot that is being written
+        mSequence = mSequence == Integer.MAX_VALUE ? 1 : mSequence + 1;
+        mBuffer.putInt(slot, 0);
+        mBuffer.position(slot + HEADER_SIZE);
+        mBuffer.put(data, 0, length);
+        mBuffer.putInt(slot, mSequence);
+        extras.putInt(SWR30.EXTRA_DISPLAY_DATA_OFFSET, slot + HEADER_SIZE);
+        extras.putInt(SWR30.EXTRA_DISPLAY_DATA_LENGTH, length);
+        extras.putInt(SWR30.EXTRA_DISPLAY_DATA_SEQUENCE, mSequence);
+        return true;
+    }
+
+    /**
+     * Unmap and close the region. The host application keeps its own mapping.
+     */
+    void close() {
+        SharedMemory.unmap(mBuffer);
+        mMemory.close();
+    }
+}
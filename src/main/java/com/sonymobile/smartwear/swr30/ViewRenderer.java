@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Renders a {@link android.view.View} to a bitmap again and again, for controls that update the same layout often.<br>
+ * Unlike {@link Control#renderView(android.view.View, boolean)}, the view is bound once to a bitmap with the size of the accessory display.
+ * Measure and layout only run when the view has requested a new layout, for example when the text of a {@link android.widget.TextView} changed size.
+ * Otherwise {@link #render()} only redraws the view into the same bitmap.<br>
+ * Example:
+ * <pre>
+ * mRenderer = new ViewRenderer(view, false);
+ * ...
+ * mTimeView.setText(time);
+ * showImage(mRenderer.render());
+ * </pre>
+ * A renderer is not thread safe, and should be used on the thread that owns the view.
+ *
+ * @since 2
+ */
+public class ViewRenderer {
+
+    private final View mView;
+    private Bitmap mBitmap;
+    private final Canvas mCanvas;
+    private boolean mLayoutNeeded = true;
+
+    /**
+     * Create a renderer for a view.
+     *
+     * @param view An inflated or dynamic instance of a {@link android.view.View} or {@link android.view.ViewGroup}, to be rendered to fit within the bounds of the accessory screen, see {@link Control#renderView(android.view.View, boolean)}.
+     * @param isPortrait True for portrait bitmap, false for landscape, see {@link Control#createBitmap(boolean)}.
+     *
+     * @since 2
+     */
+    public ViewRenderer(final View view, final boolean isPortrait) {
+        if (view == null) {
+            throw new IllegalArgumentException("view == null");
+        }
+        mView = view;
+        mBitmap = Control.createBitmap(isPortrait);
+        mCanvas = new Canvas(mBitmap);
+        mView.setLayoutParams(new ViewGroup.LayoutParams(mBitmap.getWidth(), mBitmap.getHeight()));
+    }
+
+    /**
+     * Returns the view rendered by this renderer.
+     *
+     * @return the view.
+     *
+     * @since 2
+     */
+    public View getView() {
+        return mView;
+    }
+
+    /**
+     * Force measure and layout on the next call to {@link #render()}, for changes that do not request a new layout by themselves.
+     *
+     * @since 2
+     */
+    public void invalidateLayout() {
+        mLayoutNeeded = true;
+    }
+
+    /**
+     * Render the view.
+     *
+     * @return A bitmap displaying the rendered view. The bitmap is owned by the renderer and is drawn again on the next call, so it must not be recycled or kept.
+     * It can be passed directly to {@link Control#showImage(android.graphics.Bitmap)}.
+     *
+     * @since 2
+     */
+    public Bitmap render() {
+        if (mBitmap == null) {
+            throw new IllegalStateException("ViewRenderer is released");
+        }
+        final int width = mBitmap.getWidth();
+        final int height = mBitmap.getHeight();
+        if (mLayoutNeeded || mView.isLayoutRequested()) {
+            layout(mView, width, height);
+            mLayoutNeeded = false;
+        }
+        mBitmap.eraseColor(Color.WHITE);
+        mView.draw(mCanvas);
+        return mBitmap;
+    }
+
+    /**
+     * Measure and lay out a view to exactly the given size, also used by {@link Control#renderView(android.view.View, boolean)}.
+     *
+     * @param view the view.
+     * @param width width in pixels.
+     * @param height height in pixels.
+     */
+    static void layout(final View view, final int width, final int height) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, width, height);
+    }
+
+    /**
+     * Release the bitmap of the renderer, see {@link Control#recycleBitmap(android.graphics.Bitmap)}. The renderer can not be used afterwards.
+     *
+     * @since 2
+     */
+    public void release() {
+        if (mBitmap != null) {
+            mCanvas.setBitmap(null);
+            Control.recycleBitmap(mBitmap);
+            mBitmap = null;
+        }
+    }
+}
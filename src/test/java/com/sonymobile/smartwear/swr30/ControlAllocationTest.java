@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import android.content.ContextWrapper;
+import android.os.Bundle;
+import android.text.format.DateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that commands without payload, and battery status requests answered by the host or from the cached status, do not allocate
+ * once the control has sent its first command.
+ */
+public class ControlAllocationTest {
+
+    private static final int CALLS = 10000;
+
+    // Less than one byte per call, to allow for the measurement itself
+    private static final long MAX_ALLOCATED_BYTES = CALLS / 10;
+
+    private final com.sun.management.ThreadMXBean mThreadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Control mControl;
+    private int mSentCount;
+    private Bundle mLastExtras;
+
+    @After
+    public void tearDown() {
+        Control.sBatteryStatus = null;
+    }
+
+    @Before
+    public void setUp() {
+        mControl = new Control(new ContextWrapper(null), "instance", null) {
+            @Override
+            void deliverMessageToHostapp(final int what, final Bundle extras) {
+                mSentCount++;
+                mLastExtras = extras;
+            }
+        };
+    }
+
+    @Test
+    public void vibrateStopDoesNotAllocate() {
+        mControl.vibrateStop();
+        final Bundle extras = mLastExtras;
+        final long allocated = measure(new Runnable() {
+            @Override
+            public void run() {
+                mControl.vibrateStop();
+            }
+        });
+        assertEquals(CALLS * 2 + 1, mSentCount);
+        assertSame(extras, mLastExtras);
+        assertTrue("allocated " + allocated + " bytes", allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void requestStopDoesNotAllocate() {
+        mControl.requestStop();
+        final long allocated = measure(new Runnable() {
+            @Override
+            public void run() {
+                mControl.requestStop();
+            }
+        });
+        assertTrue("allocated " + allocated + " bytes", allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void requestBatteryStatusDoesNotAllocate() {
+        mControl.requestBatteryStatus();
+        mControl.mBatteryRequestInFlight = false;
+        final long allocated = measure(new Runnable() {
+            @Override
+            public void run() {
+                mControl.requestBatteryStatus();
+                // As if the reply had arrived, so that every call sends a request
+                mControl.mBatteryRequestInFlight = false;
+            }
+        });
+        assertEquals(CALLS * 2 + 1, mSentCount);
+        assertTrue("allocated " + allocated + " bytes", allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void cachedBatteryStatusDoesNotAllocate() {
+        mControl.setBatteryStatusMaxAge(DateUtils.MINUTE_IN_MILLIS);
+        mControl.onMessage(SWR30.MSG_BATTERY_STATUS, new Bundle());
+        final long allocated = measure(new Runnable() {
+            @Override
+            public void run() {
+                mControl.requestBatteryStatus();
+            }
+        });
+        // Answered from the cached status without asking the host application
+        assertEquals(0, mSentCount);
+        assertTrue("allocated " + allocated + " bytes", allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    /**
+     * Run a call {@link #CALLS} times to warm up, then measure the bytes allocated by another {@link #CALLS} calls.
+     */
+    private long measure(final Runnable call) {
+        for (int i = 0; i < CALLS; i++) {
+            call.run();
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long before = mThreadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < CALLS; i++) {
+            call.run();
+        }
+        return mThreadMXBean.getThreadAllocatedBytes(threadId) - before;
+    }
+}
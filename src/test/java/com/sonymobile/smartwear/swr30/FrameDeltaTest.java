@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameDeltaTest {
+
+    private static final int WIDTH = 296;
+    private static final int HEIGHT = 128;
+    private static final int STRIDE = WIDTH / 8;
+
+    @Test
+    public void deltaReconstructsTheNewFrame() {
+        final Random random = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            final byte[] previous = new byte[STRIDE * HEIGHT];
+            random.nextBytes(previous);
+            final byte[] frame = previous.clone();
+            final int changes = 1 + random.nextInt(20);
+            for (int j = 0; j < changes; j++) {
+                frame[random.nextInt(frame.length)] ^= (byte) (1 + random.nextInt(255));
+            }
+            final FrameDelta delta = new FrameDelta();
+            delta.setPrevious(previous, WIDTH, HEIGHT, FrameDelta.hash(previous));
+            if (delta.compute(frame, WIDTH, HEIGHT)) {
+                assertArrayEquals(frame, apply(previous, delta.getRects(), delta.getData(frame)));
+            }
+        }
+    }
+
+    @Test
+    public void noComparableFrame() {
+        final FrameDelta delta = new FrameDelta();
+        final byte[] frame = new byte[STRIDE * HEIGHT];
+        assertFalse(delta.compute(frame, WIDTH, HEIGHT));
+        delta.setPrevious(frame, WIDTH, HEIGHT, FrameDelta.hash(frame));
+        assertFalse(delta.compute(new byte[HEIGHT / 8 * WIDTH], HEIGHT, WIDTH));
+    }
+
+    @Test
+    public void identicalFrame() {
+        final FrameDelta delta = new FrameDelta();
+        final byte[] frame = new byte[STRIDE * HEIGHT];
+        frame[100] = 1;
+        delta.setPrevious(frame, WIDTH, HEIGHT, FrameDelta.hash(frame));
+        assertTrue(delta.isPrevious(frame.clone(), WIDTH, HEIGHT, FrameDelta.hash(frame)));
+    }
+
+    @Test
+    public void composeRegion() {
+        final FrameDelta delta = new FrameDelta();
+        final byte[] previous = new byte[STRIDE * HEIGHT];
+        delta.setPrevious(previous, WIDTH, HEIGHT, FrameDelta.hash(previous));
+        // A 4x2 black region at 10,5
+        final byte[] composed = delta.compose(new byte[] {(byte) 0xF0, (byte) 0xF0}, 10, 5, 4, 2, new byte[previous.length]);
+        final byte[] expected = new byte[STRIDE * HEIGHT];
+        expected[5 * STRIDE + 1] = 0x3C;
+        expected[6 * STRIDE + 1] = 0x3C;
+        assertArrayEquals(expected, composed);
+        assertArrayEquals(composed, apply(previous, delta.getRects(), delta.getData(composed)));
+    }
+
+    /**
+     * Apply a delta update to a frame, as the host application does.
+     */
+    private static byte[] apply(final byte[] previous, final int[] rects, final byte[] data) {
+        final byte[] frame = previous.clone();
+        int index = 0;
+        for (int i = 0; i < rects.length; i += 4) {
+            final int bytes = rects[i + 2] / 8;
+            for (int y = rects[i + 1]; y < rects[i + 1] + rects[i + 3]; y++) {
+                System.arraycopy(data, index, frame, y * STRIDE + rects[i] / 8, bytes);
+                index += bytes;
+            }
+        }
+        return frame;
+    }
+}
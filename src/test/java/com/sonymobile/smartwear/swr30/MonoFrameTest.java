@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class MonoFrameTest {
+
+    private final Random mRandom = new Random(4);
+
+    @Test
+    public void rotate() {
+        final MonoFrame src = randomFrame(296, 128);
+        final int[] angles = {0, 90, 180, 270};
+        for (int degrees : angles) {
+            final boolean quarter = degrees == 90 || degrees == 270;
+            final MonoFrame dst = quarter ? new MonoFrame(128, 296) : new MonoFrame(296, 128);
+            src.rotate(dst, degrees);
+            for (int y = 0; y < src.getHeight(); y++) {
+                for (int x = 0; x < src.getWidth(); x++) {
+                    final boolean expected = src.getPixel(x, y);
+                    final int w = src.getWidth();
+                    final int h = src.getHeight();
+                    final boolean actual;
+                    if (degrees == 0) {
+                        actual = dst.getPixel(x, y);
+                    } else if (degrees == 90) {
+                        actual = dst.getPixel(h - 1 - y, x);
+                    } else if (degrees == 180) {
+                        actual = dst.getPixel(w - 1 - x, h - 1 - y);
+                    } else {
+                        actual = dst.getPixel(y, w - 1 - x);
+                    }
+                    assertEquals(degrees + " degrees, pixel " + x + "," + y, expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rotate180WithPadding() {
+        final MonoFrame src = randomFrame(13, 5);
+        final MonoFrame dst = new MonoFrame(13, 5);
+        src.rotate(dst, 180);
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 13; x++) {
+                assertEquals(src.getPixel(x, y), dst.getPixel(12 - x, 4 - y));
+            }
+        }
+    }
+
+    @Test
+    public void invertRect() {
+        for (int i = 0; i < 200; i++) {
+            final MonoFrame frame = randomFrame(37, 21);
+            final boolean[][] expected = pixels(frame);
+            final int left = mRandom.nextInt(50) - 5;
+            final int top = mRandom.nextInt(30) - 5;
+            final int right = left + mRandom.nextInt(45);
+            final int bottom = top + mRandom.nextInt(25);
+            frame.invertRect(left, top, right, bottom);
+            for (int y = Math.max(0, top); y < Math.min(21, bottom); y++) {
+                for (int x = Math.max(0, left); x < Math.min(37, right); x++) {
+                    expected[y][x] = !expected[y][x];
+                }
+            }
+            assertPixels(expected, frame);
+        }
+    }
+
+    @Test
+    public void blit() {
+        final int[] modes = {MonoFrame.BlitMode.BLIT_COPY, MonoFrame.BlitMode.BLIT_OR, MonoFrame.BlitMode.BLIT_XOR};
+        for (int i = 0; i < 300; i++) {
+            final MonoFrame src = randomFrame(1 + mRandom.nextInt(40), 1 + mRandom.nextInt(20));
+            final MonoFrame dst = randomFrame(1 + mRandom.nextInt(40), 1 + mRandom.nextInt(20));
+            final boolean[][] expected = pixels(dst);
+            final int srcX = mRandom.nextInt(src.getWidth());
+            final int srcY = mRandom.nextInt(src.getHeight());
+            final int width = mRandom.nextInt(src.getWidth() - srcX + 1);
+            final int height = mRandom.nextInt(src.getHeight() - srcY + 1);
+            final int dstX = mRandom.nextInt(dst.getWidth() + 10) - 10;
+            final int dstY = mRandom.nextInt(dst.getHeight() + 10) - 10;
+            final int mode = modes[i % modes.length];
+            dst.blit(src, srcX, srcY, width, height, dstX, dstY, mode);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    final int tx = dstX + x;
+                    final int ty = dstY + y;
+                    if (tx < 0 || ty < 0 || tx >= dst.getWidth() || ty >= dst.getHeight()) {
+                        continue;
+                    }
+                    final boolean s = src.getPixel(srcX + x, srcY + y);
+                    if (mode == MonoFrame.BlitMode.BLIT_COPY) {
+                        expected[ty][tx] = s;
+                    } else if (mode == MonoFrame.BlitMode.BLIT_OR) {
+                        expected[ty][tx] |= s;
+                    } else {
+                        expected[ty][tx] ^= s;
+                    }
+                }
+            }
+            assertPixels(expected, dst);
+        }
+    }
+
+    private MonoFrame randomFrame(final int width, final int height) {
+        final MonoFrame frame = new MonoFrame(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                frame.setPixel(x, y, mRandom.nextBoolean());
+            }
+        }
+        return frame;
+    }
+
+    private static boolean[][] pixels(final MonoFrame frame) {
+        final boolean[][] pixels = new boolean[frame.getHeight()][frame.getWidth()];
+        for (int y = 0; y < frame.getHeight(); y++) {
+            for (int x = 0; x < frame.getWidth(); x++) {
+                pixels[y][x] = frame.getPixel(x, y);
+            }
+        }
+        return pixels;
+    }
+
+    private static void assertPixels(final boolean[][] expected, final MonoFrame frame) {
+        for (int y = 0; y < frame.getHeight(); y++) {
+            for (int x = 0; x < frame.getWidth(); x++) {
+                assertEquals("pixel " + x + "," + y, expected[y][x], frame.getPixel(x, y));
+            }
+        }
+    }
+}
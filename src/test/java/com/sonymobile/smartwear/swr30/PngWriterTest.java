@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class PngWriterTest {
+
+    @Test
+    public void decodesToTheSamePixels() throws IOException {
+        final Random random = new Random(2);
+        final PngWriter writer = new PngWriter();
+        final int[][] sizes = {{296, 128}, {128, 296}, {13, 7}, {1, 1}};
+        for (int[] size : sizes) {
+            final int width = size[0];
+            final int height = size[1];
+            final byte[] frame = new byte[MonochromeEncoder.getStride(width) * height];
+            // Repeated rows exercise the Up filter, random rows the None filter
+            for (int y = 0; y < height; y++) {
+                if (y % 3 == 0) {
+                    for (int i = 0; i < MonochromeEncoder.getStride(width); i++) {
+                        frame[y * MonochromeEncoder.getStride(width) + i] = (byte) random.nextInt(256);
+                    }
+                } else {
+                    System.arraycopy(frame, (y - 1) * MonochromeEncoder.getStride(width), frame, y * MonochromeEncoder.getStride(width),
+                            MonochromeEncoder.getStride(width));
+                }
+            }
+            // The writer is reused, so write twice
+            writer.write(new byte[frame.length], width, height);
+            assertPixels(frame, width, height, writer.write(frame, width, height));
+        }
+    }
+
+    private static void assertPixels(final byte[] frame, final int width, final int height, final byte[] png) throws IOException {
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull(image);
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        final int stride = MonochromeEncoder.getStride(width);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final boolean black = (frame[y * stride + (x >> 3)] & (0x80 >> (x & 7))) != 0;
+                assertEquals("pixel " + x + "," + y, black ? 0x000000 : 0xFFFFFF, image.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014 Sony Mobile Communications Inc.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names
+ *    of its contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sonymobile.smartwear.swr30;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RleCodecTest {
+
+    private static final int FRAME_LENGTH = 4736;
+
+    @Test
+    public void roundTripRandomData() {
+        final Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            final byte[] data = new byte[random.nextInt(600)];
+            // Mix runs and literals of all lengths
+            int pos = 0;
+            while (pos < data.length) {
+                final int length = Math.min(data.length - pos, 1 + random.nextInt(200));
+                if (random.nextBoolean()) {
+                    Arrays.fill(data, pos, pos + length, (byte) random.nextInt(256));
+                } else {
+                    for (int j = pos; j < pos + length; j++) {
+                        data[j] = (byte) random.nextInt(256);
+                    }
+                }
+                pos += length;
+            }
+            final byte[] encoded = RleCodec.encode(data);
+            assertTrue(encoded.length <= RleCodec.getMaxEncodedSize(data.length));
+            assertArrayEquals(data, RleCodec.decode(encoded, data.length));
+        }
+    }
+
+    @Test
+    public void incompressibleDataStaysWithinMaxSize() {
+        final byte[] data = new byte[FRAME_LENGTH];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final byte[] encoded = RleCodec.encode(data);
+        assertEquals(RleCodec.getMaxEncodedSize(data.length), encoded.length);
+        assertArrayEquals(data, RleCodec.decode(encoded, data.length));
+    }
+
+    @Test
+    public void whiteFrameIsSmall() {
+        final byte[] data = new byte[FRAME_LENGTH];
+        final byte[] encoded = RleCodec.encode(data);
+        assertEquals((FRAME_LENGTH + 127) / 128 * 2, encoded.length);
+        assertArrayEquals(data, RleCodec.decode(encoded, data.length));
+    }
+
+    @Test
+    public void encodeWithOffset() {
+        final byte[] data = {9, 9, 1, 1, 1, 1, 2, 3, 9};
+        final byte[] out = new byte[RleCodec.getMaxEncodedSize(6)];
+        final int length = RleCodec.encode(data, 2, 6, out);
+        assertArrayEquals(Arrays.copyOfRange(data, 2, 8), RleCodec.decode(Arrays.copyOf(out, length), 6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeTruncatedData() {
+        final byte[] encoded = RleCodec.encode(new byte[] {1, 2, 3, 4, 5});
+        RleCodec.decode(Arrays.copyOf(encoded, encoded.length - 1), 5);
+    }
+}